@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.pscode.tool.janela.model.DescriptorDiff;
+import org.pscode.tool.janela.model.JNLPDescriptor;
+
+/** What one analysis of a descriptor found.  Results never change once
+made, so they can be handed to other threads as they are. */
+public final class AnalysisResult {
+
+    private final URL url;
+    private final DescriptorSnapshot snapshot;
+    private final JNLPDescriptor descriptor;
+    private final DescriptorDiff diff;
+    private final boolean xmlValid;
+    private final List<LaunchError> errors;
+    private final List<URL> extensions;
+
+    AnalysisResult(URL url, DescriptorSnapshot snapshot,
+            JNLPDescriptor descriptor, DescriptorDiff diff, boolean xmlValid,
+            List<LaunchError> errors, List<URL> extensions) {
+        this.url = url;
+        this.snapshot = snapshot;
+        this.descriptor = descriptor;
+        this.diff = diff;
+        this.xmlValid = xmlValid;
+        this.errors = Collections.unmodifiableList(new ArrayList<LaunchError>(errors));
+        this.extensions = Collections.unmodifiableList(new ArrayList<URL>(extensions));
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /** @return the descriptor as fetched, or null if it could not be
+    fetched. */
+    public DescriptorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** @return the model of the descriptor, or null if it was not
+    well-formed. */
+    public JNLPDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /** @return how the descriptor changed since the analysis before,
+    as found when the element results kept from it were updated, or null
+    if there were no such results or no model. */
+    public DescriptorDiff getDiff() {
+        return diff;
+    }
+
+    public boolean isXMLValid() {
+        return xmlValid;
+    }
+
+    public List<LaunchError> getErrors() {
+        return errors;
+    }
+
+    public List<URL> getExtensions() {
+        return extensions;
+    }
+
+    /** @return a copy of this result with <code>more</code> problems
+    reported after the others. */
+    public AnalysisResult withErrors(List<LaunchError> more) {
+        if (more.isEmpty()) {
+            return this;
+        }
+        List<LaunchError> all = new ArrayList<LaunchError>(errors);
+        all.addAll(more);
+        return new AnalysisResult(url, snapshot, descriptor, diff, xmlValid,
+            all, extensions);
+    }
+
+    public String getReport() {
+        StringBuffer sb = new StringBuffer("Report for ");
+        sb.append( getURL() );
+        sb.append( "\n\n" );
+
+        for (LaunchError error : errors) {
+            sb.append( error );
+            sb.append( "\n" );
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Analyses a batch of descriptors without a GUI, several at a time.
+All analyses share one analyser, one resource prober and the default HTTP cache, so a
+jar used by many descriptors is only probed once.
+<p>
+Usage:
+<pre>
+java -cp janela.jar org.pscode.tool.janela.BatchAnalyser
+    [-threads n] [-extensions] [-offline] [-stream] [-list file] [url|path]...
+</pre>
+Descriptors are given as URLs or file paths on the command line, and/or
+one per line in the list file (<code>-</code> for standard input).  With
+neither, the list is read from standard input.  Blank lines and lines
+starting with <code>#</code> are skipped.  With
+<code>-extensions</code> the extensions of each descriptor are analysed
+as well (see {@link ExtensionCrawler}), each only once, and reported after
+the first descriptor to refer to it.  With
+<code>-offline</code> nothing is fetched over the network, only local
+descriptors are read and only the checks that need no network are run
+(see {@link JNLPAnalyser#setOffline(boolean)}), which suits pre-commit
+hooks.  With <code>-stream</code> each descriptor is checked while it is
+read, element by element, for descriptors too large to hold (see
+{@link JNLPAnalyser#setStreaming(boolean)}).  The reports are printed in
+the order the descriptors were given, and the exit code is 1 if any
+report holds an ERROR or FATAL problem, 2 if the arguments were wrong. */
+public class BatchAnalyser {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ERRORS = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private final int threads;
+    private final JNLPAnalyser analyser;
+    private final ResourceProber resourceProber;
+    private ExtensionCrawler crawler;
+
+    /** @param threads how many descriptors to analyse at the same time. */
+    public BatchAnalyser(int threads) {
+        this(threads, new JNLPAnalyser());
+    }
+
+    /** @param threads how many descriptors to analyse at the same time.
+    @param analyser analyses every descriptor of the batch. */
+    public BatchAnalyser(int threads, JNLPAnalyser analyser) {
+        if (threads<1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.analyser = analyser;
+        this.resourceProber = new ResourceProber(analyser.getHttpCache());
+    }
+
+    /** Also analyse the extensions of every descriptor, with
+    <code>crawler</code>, or only the descriptors themselves if it is null
+    (the default).  The crawl runs on the threads of the batch, not those
+    of the crawler. */
+    public void setExtensionCrawler(ExtensionCrawler crawler) {
+        if (crawler!=null) {
+            crawler.setResourceProber(resourceProber);
+        }
+        this.crawler = crawler;
+    }
+
+    /** Analyse every descriptor in <code>urls</code> and wait for them all.
+    @return the results, in the order of <code>urls</code>, each followed
+    by those of the extensions first reached from it if they are crawled. */
+    public List<AnalysisResult> analyse(List<URL> urls) {
+        ExecutorService executor = NetworkExecutors.newExecutor("janela-batch-",
+            crawler == null ? Math.max(1, Math.min(threads, urls.size())) : threads);
+        try {
+            if (crawler!=null) {
+                return crawl(urls, executor);
+            }
+            List<CompletableFuture<List<AnalysisResult>>> futures =
+                new ArrayList<CompletableFuture<List<AnalysisResult>>>(urls.size());
+            for (int ii=0; ii<urls.size(); ii++) {
+                final URL url = urls.get(ii);
+                final Executor stages = executor;
+                if (ii<threads) {
+                    futures.add( analyseOne(url, executor) );
+                } else {
+                    // no more than threads descriptors at a time, each one
+                    // takes the place of one that is done
+                    futures.add( futures.get(ii - threads)
+                        .handle(new BiFunction<List<AnalysisResult>, Throwable, Void>() {
+                            public Void apply(List<AnalysisResult> results, Throwable failure) {
+                                return null;
+                            }
+                        })
+                        .thenCompose(new Function<Void, CompletableFuture<List<AnalysisResult>>>() {
+                            public CompletableFuture<List<AnalysisResult>> apply(Void done) {
+                                return analyseOne(url, stages);
+                            }
+                        }) );
+                }
+            }
+
+            List<AnalysisResult> results = new ArrayList<AnalysisResult>(urls.size());
+            for (CompletableFuture<List<AnalysisResult>> future : futures) {
+                try {
+                    results.addAll( future.get() );
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch(ExecutionException ee) {
+                    // analyses report their own problems, this is a bug
+                    throw new IllegalStateException(ee.getCause());
+                }
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<List<AnalysisResult>> analyseOne(URL url, Executor executor) {
+        return analyser.analyzeAsync(url, resourceProber, executor)
+            .thenApply(new Function<AnalysisResult, List<AnalysisResult>>() {
+                public List<AnalysisResult> apply(AnalysisResult result) {
+                    return Collections.singletonList(result);
+                }
+            });
+    }
+
+    /** Crawl the extensions of all <code>urls</code> at once, so each
+    descriptor is analysed once however many of the batch refer to it.
+    @return the results of each descriptor of the batch, followed by
+    those of the extensions first reached from it. */
+    private List<AnalysisResult> crawl(List<URL> urls, Executor executor) {
+        List<ExtensionCrawler.Node> nodes;
+        try {
+            nodes = crawler.crawlAsync(urls, null, executor, threads).get();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<AnalysisResult>();
+        } catch(ExecutionException ee) {
+            // analyses report their own problems, this is a bug
+            throw new IllegalStateException(ee.getCause());
+        }
+        // the nodes come level by level, so a parent is always met first
+        Map<String, String> roots = new HashMap<String, String>();
+        Map<String, List<AnalysisResult>> groups =
+            new LinkedHashMap<String, List<AnalysisResult>>();
+        for (ExtensionCrawler.Node node : nodes) {
+            String key = node.getURL().toExternalForm();
+            String root = node.getParent() == null
+                ? key
+                : roots.get(node.getParent().toExternalForm());
+            roots.put(key, root);
+            List<AnalysisResult> group = groups.get(root);
+            if (group==null) {
+                group = new ArrayList<AnalysisResult>();
+                groups.put(root, group);
+            }
+            group.add( node.getResult() );
+        }
+        List<AnalysisResult> results = new ArrayList<AnalysisResult>(nodes.size());
+        for (List<AnalysisResult> group : groups.values()) {
+            results.addAll(group);
+        }
+        return results;
+    }
+
+    /** Analyse a single descriptor, sharing the probes of this batch. */
+    public AnalysisResult analyse(URL url) {
+        return analyser.analyze(url, resourceProber);
+    }
+
+    /** Print the report of <code>result</code>, each problem prefixed
+    with its level. */
+    public static void printReport(AnalysisResult result, PrintStream out) {
+        out.println("Report for " + result.getURL());
+        out.println();
+        for (LaunchError error : result.getErrors()) {
+            out.println(error.getLevel() + ": " + error);
+        }
+        out.println();
+    }
+
+    /** @return true if any problem of <code>result</code> is an ERROR
+    or FATAL. */
+    public static boolean hasErrors(AnalysisResult result) {
+        for (LaunchError error : result.getErrors()) {
+            if (error.getLevel()==ErrorLevel.FATAL || error.getLevel()==ErrorLevel.ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the URL of a descriptor given as a URL or a file path. */
+    public static URL toURL(String location) throws MalformedURLException {
+        // a drive letter such as C: is not a protocol
+        if (location.indexOf(':')>1) {
+            try {
+                return new URL(location);
+            } catch(MalformedURLException murle) {
+                // not a URL, so it must be a path
+            }
+        }
+        return new File(location).getAbsoluteFile().toURI().toURL();
+    }
+
+    /** Add the descriptors listed in <code>is</code>, one per line. */
+    static void readList(InputStream is, List<URL> urls) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) !=null) {
+            line = line.trim();
+            if (line.length()>0 && !line.startsWith("#")) {
+                urls.add( toURL(line) );
+            }
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: java -cp janela.jar " + BatchAnalyser.class.getName()
+            + " [-threads n] [-extensions] [-offline] [-stream] [-list file|-] [url|path]...");
+        System.exit(EXIT_USAGE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<URL> urls = new ArrayList<URL>();
+        boolean listed = false;
+        boolean extensions = false;
+        boolean offline = false;
+        boolean streaming = false;
+        for (int ii=0; ii<args.length; ii++) {
+            String arg = args[ii];
+            if ("-threads".equals(arg) || "-list".equals(arg)) {
+                if (ii + 1==args.length) {
+                    usage("Missing value for " + arg);
+                }
+                String value = args[++ii];
+                if ("-threads".equals(arg)) {
+                    try {
+                        threads = Integer.parseInt(value);
+                    } catch(NumberFormatException nfe) {
+                        threads = 0;
+                    }
+                    if (threads<1) {
+                        usage("Not a thread count: " + value);
+                    }
+                } else if ("-".equals(value)) {
+                    readList(System.in, urls);
+                    listed = true;
+                } else {
+                    InputStream is = new FileInputStream(value);
+                    try {
+                        readList(is, urls);
+                    }
+                    finally {
+                        is.close();
+                    }
+                    listed = true;
+                }
+            } else if ("-extensions".equals(arg)) {
+                extensions = true;
+            } else if ("-offline".equals(arg)) {
+                offline = true;
+            } else if ("-stream".equals(arg)) {
+                streaming = true;
+            } else if (arg.startsWith("-") && arg.length()>1) {
+                usage("Unknown option " + arg);
+            } else {
+                urls.add( toURL(arg) );
+                listed = true;
+            }
+        }
+        if (!listed) {
+            readList(System.in, urls);
+        }
+        if (urls.isEmpty()) {
+            usage("No descriptors to analyse");
+        }
+
+        JNLPAnalyser analyser = new JNLPAnalyser();
+        if (offline) {
+            analyser.setOffline(true);
+            analyser.setHttpCache(null);
+        }
+        analyser.setStreaming(streaming);
+        BatchAnalyser batch = new BatchAnalyser(threads, analyser);
+        if (extensions) {
+            batch.setExtensionCrawler(new ExtensionCrawler(analyser));
+        }
+        List<AnalysisResult> results = batch.analyse(urls);
+
+        int[] counts = new int[ErrorLevel.values().length];
+        boolean failed = false;
+        for (AnalysisResult result : results) {
+            printReport(result, System.out);
+            for (LaunchError error : result.getErrors()) {
+                counts[error.getLevel().ordinal()]++;
+            }
+            failed |= hasErrors(result);
+        }
+
+        StringBuffer sb = new StringBuffer("Analysed ");
+        sb.append( results.size() );
+        sb.append( results.size()==1 ? " descriptor" : " descriptors" );
+        for (ErrorLevel level : ErrorLevel.values()) {
+            sb.append( ", " );
+            sb.append( counts[level.ordinal()] );
+            sb.append( " " );
+            sb.append( level );
+        }
+        System.out.println(sb);
+        System.exit(failed ? EXIT_ERRORS : EXIT_OK);
+    }
+}
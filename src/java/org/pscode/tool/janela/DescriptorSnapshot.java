@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** The body and response headers of a JNLP descriptor, fetched once
+and shared by every check and viewer that needs them. */
+public class DescriptorSnapshot {
+
+    /** The file name of a descriptor in memory without an href. */
+    private static final String UNNAMED = "descriptor.jnlp";
+
+    private static final Pattern XML_DECLARATION = Pattern.compile(
+        "\\s*<\\?xml[^>]*?encoding\\s*=\\s*[\"']([A-Za-z0-9._\\-]+)[\"']");
+
+    private final URL url;
+    private final byte[] content;
+    private final String contentType;
+    private final String contentEncoding;
+    private final Map<String, List<String>> headers;
+
+    public DescriptorSnapshot(URL url, byte[] content,
+            String contentType, String contentEncoding,
+            Map<String, List<String>> headers) {
+        this.url = url;
+        this.content = content;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.headers = headers == null
+            ? Collections.<String, List<String>>emptyMap()
+            : Collections.unmodifiableMap(headers);
+    }
+
+    /** Fetch the descriptor with a single connection. */
+    public static DescriptorSnapshot fetch(URL url) throws IOException {
+        return fetch(url, null);
+    }
+
+    /** Fetch the descriptor with a single connection.  If a cache is
+    given, the request is conditional on the cached copy, which is used
+    when the server reports that it has not been modified. */
+    public static DescriptorSnapshot fetch(URL url, HttpCache cache) throws IOException {
+        URLConnection urlc = url.openConnection();
+        HttpURLConnection http = urlc instanceof HttpURLConnection
+            ? (HttpURLConnection)urlc
+            : null;
+        if (cache!=null && http!=null) {
+            HttpCache.Entry cached = cache.get(url);
+            if (cached!=null && cached.getBody()!=null) {
+                // only a stored body can stand in for a 304 response
+                cache.addValidators(http, cached);
+            }
+            if (http.getResponseCode()==HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Map<String, List<String>> headers = http.getHeaderFields();
+                http.disconnect();
+                cached = cache.revalidated(url);
+                if (cached!=null && cached.getBody()!=null) {
+                    return new DescriptorSnapshot(url, readFile(cached.getBody()),
+                        cached.getContentType(), cached.getContentEncoding(), headers);
+                }
+                // evicted meanwhile, ask again without conditions
+                return fetch(url, null);
+            }
+        }
+
+        // read the headers first, some connections guess the type from the body
+        String type = urlc.getContentType();
+        String encoding = urlc.getContentEncoding();
+        Map<String, List<String>> headers = urlc.getHeaderFields();
+        InputStream is = urlc.getInputStream();
+        try {
+            byte[] content = readFully(is);
+            if (cache!=null && http!=null) {
+                cache.update(http, content);
+            }
+            return new DescriptorSnapshot(
+                url, content, type, encoding, headers);
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    /** A descriptor held in memory, taken to have been fetched from
+    <code>base</code>.  Without a base it is taken to be where its codebase
+    and href say, with the working directory standing in for what they
+    do not say.  There are no response headers. */
+    public static DescriptorSnapshot of(byte[] content, URL base) throws IOException {
+        URL url = base == null ? locate(content) : base;
+        return new DescriptorSnapshot(url, content, null, null, null);
+    }
+
+    /** A descriptor read from <code>is</code>, which is left open.
+    @see #of(byte[], URL) */
+    public static DescriptorSnapshot of(InputStream is, URL base) throws IOException {
+        return of(readFully(is), base);
+    }
+
+    /** A descriptor read from <code>reader</code>, which is left open.  It
+    is encoded in the encoding of its XML declaration, or UTF-8, so the
+    parser reads it back as it was written.
+    @see #of(byte[], URL) */
+    public static DescriptorSnapshot of(Reader reader, URL base) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] c = new char[8192];
+        int read = reader.read(c);
+        while ( read>-1 ) {
+            sb.append(c,0,read);
+            read = reader.read(c);
+        }
+        if (sb.length()>0 && sb.charAt(0)=='\uFEFF') {
+            // the byte order mark of the encoding it was read from
+            sb.deleteCharAt(0);
+        }
+        String text = sb.toString();
+        return of(text.getBytes(getDeclaredCharset(text)), base);
+    }
+
+    /** A descriptor read from the file at <code>path</code>.  Without a
+    base it is taken to have been fetched from the file. */
+    public static DescriptorSnapshot of(Path path, URL base) throws IOException {
+        return of(Files.readAllBytes(path), base == null ? path.toUri().toURL() : base);
+    }
+
+    /** @return where the codebase and href of the descriptor say it is. */
+    private static URL locate(byte[] content) throws IOException {
+        Map<String, String> root = SchemaCache.readRootAttributes(
+            new ByteArrayInputStream(content));
+        String codebase = root.get("codebase");
+        String href = root.get("href");
+        URL directory = new File(System.getProperty("user.dir")).toURI().toURL();
+        try {
+            URL codebaseUrl = codebase == null
+                ? directory
+                : new URL(directory, codebase);
+            return new URL(codebaseUrl, href == null ? UNNAMED : href);
+        } catch(MalformedURLException murle) {
+            // the codebase rule reports it
+            return new URL(directory, UNNAMED);
+        }
+    }
+
+    private static Charset getDeclaredCharset(String text) {
+        Matcher matcher = XML_DECLARATION.matcher(text);
+        if (matcher.lookingAt()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch(IllegalArgumentException iae) {
+                // unknown to this JVM, the parser will report it
+            }
+        }
+        return Charset.forName("UTF-8");
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return readFully(is);
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int read = is.read(b);
+        while ( read>-1 ) {
+            baos.write(b,0,read);
+            read = is.read(b);
+        }
+        return baos.toByteArray();
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /** @return a fresh stream over the descriptor bytes. */
+    public InputStream openStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    public int getLength() {
+        return content.length;
+    }
+
+    /** @return the descriptor decoded with the charset named in the
+    content type, or else as an XML parser would: by its byte order mark,
+    then by the encoding of its XML declaration, then as UTF-8. */
+    public String getText() {
+        String charset = getCharset();
+        if (charset!=null) {
+            try {
+                return new String(content, charset);
+            } catch(UnsupportedEncodingException uee) {
+                // decode it as if none was given
+            }
+        }
+        if (content.length>=3 && (content[0]&0xff)==0xEF
+                && (content[1]&0xff)==0xBB && (content[2]&0xff)==0xBF) {
+            return new String(content, 3, content.length - 3, Charset.forName("UTF-8"));
+        }
+        if (content.length>=2 && ((content[0]&0xff)==0xFE && (content[1]&0xff)==0xFF
+                || (content[0]&0xff)==0xFF && (content[1]&0xff)==0xFE)) {
+            // the UTF-16 decoder reads and drops the byte order mark
+            return new String(content, Charset.forName("UTF-16"));
+        }
+        // the declaration itself is ASCII in every encoding it can name here
+        String ascii = new String(content, Charset.forName("ISO-8859-1"));
+        return new String(content, getDeclaredCharset(ascii));
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    private String getCharset() {
+        if (contentType==null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.toLowerCase().startsWith("charset=")) {
+                return param.substring("charset=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+}
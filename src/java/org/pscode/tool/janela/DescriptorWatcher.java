@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.pscode.tool.janela.model.DescriptorDiff;
+import org.pscode.tool.janela.rule.ElementResults;
+
+/** Watches a local descriptor and analyses it again each time it is
+saved.  Each new model is compared with the one before, and the rules only
+check the resource and java elements that changed; the probes of the
+hrefs that did not change are taken from the prober, so an edit that
+touches one jar fetches no more than that jar.  The watching is done by a
+daemon thread, which also makes the first analysis. */
+public class DescriptorWatcher {
+
+    /** Told about each analysis, in the thread of the watcher. */
+    public interface Listener {
+
+        /** @param diff how the descriptor changed since the last analysis
+        that could read it, or null if this time it could not be read. */
+        void analysed(AnalysisResult result, DescriptorDiff diff);
+    }
+
+    /** How long to wait for more changes after one, as editors often save
+    a file in several steps. */
+    private static final long SETTLE_MILLIS = 200;
+
+    private final JNLPAnalyser analyser;
+    private final Path file;
+    private final URL url;
+    private final ResourceProber prober;
+    private final Listener listener;
+    private final ElementResults results = new ElementResults();
+
+    private WatchService watchService;
+    private Thread thread;
+
+    /** @param prober the probes to reuse, or null to start afresh. */
+    public DescriptorWatcher(JNLPAnalyser analyser, File file,
+            ResourceProber prober, Listener listener) throws IOException {
+        this.analyser = analyser;
+        this.file = file.getAbsoluteFile().toPath();
+        this.url = this.file.toUri().toURL();
+        this.prober = prober == null
+            ? new ResourceProber(analyser.getHttpCache())
+            : prober;
+        this.listener = listener;
+    }
+
+    public File getFile() {
+        return file.toFile();
+    }
+
+    /** Analyse the descriptor, then again whenever it is saved, until
+    {@link #stop()}. */
+    public synchronized void start() throws IOException {
+        if (thread!=null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        // editors that save by renaming create the file anew
+        file.getParent().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(new Runnable() {
+            public void run() {
+                watch();
+            }
+        }, "janela-watcher-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop watching.  An analysis under way is finished, but not reported. */
+    public synchronized void stop() {
+        if (thread==null) {
+            return;
+        }
+        thread.interrupt();
+        thread = null;
+        try {
+            watchService.close();
+        } catch(IOException ioe) {
+            // nothing is watched any more either way
+        }
+    }
+
+    private synchronized boolean isWatching(Thread current) {
+        return thread==current;
+    }
+
+    private void watch() {
+        Thread current = Thread.currentThread();
+        try {
+            analyse(current);
+            while (isWatching(current)) {
+                WatchKey key = watchService.take();
+                boolean changed = isChanged(key);
+                if (!key.reset()) {
+                    // the directory is gone
+                    return;
+                }
+                if (changed) {
+                    settle();
+                    analyse(current);
+                }
+            }
+        } catch(InterruptedException ie) {
+            // stopped
+        } catch(ClosedWatchServiceException cwse) {
+            // stopped
+        }
+    }
+
+    /** @return true if one of the events of <code>key</code> is about the
+    descriptor. */
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())
+                    || event.kind()==StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Wait until no more events come for a while. */
+    private void settle() throws InterruptedException {
+        WatchKey key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        while (key!=null) {
+            key.pollEvents();
+            key.reset();
+            key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void analyse(Thread current) {
+        AnalysisResult result = analyser.analyze(url, prober, results);
+        if (isWatching(current)) {
+            listener.analysed(result, result.getDiff());
+        }
+    }
+}
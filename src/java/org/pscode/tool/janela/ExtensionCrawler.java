@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Analyses a descriptor and, transitively, every extension it refers to.
+<p>
+The graph is walked level by level: all descriptors at the same depth are
+analysed concurrently, then their extensions are examined in document
+order.  Each URL is analysed once however many descriptors refer to it.
+A reference that closes a cycle, and an extension nested deeper than the
+depth limit, are reported as warnings of the descriptor making the
+reference rather than followed. */
+public class ExtensionCrawler {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    private static ExecutorService defaultExecutor;
+
+    private final JNLPAnalyser analyser;
+    private final Executor executor;
+    private final int maxDepth;
+    private ResourceProber resourceProber;
+
+    /** Told about each descriptor as soon as its analysis, and the
+    examination of its extensions, is complete. */
+    public interface Listener {
+        void analysed(Node node);
+    }
+
+    /** One descriptor of the graph. */
+    public static class Node {
+        private final URL url;
+        private final URL parent;
+        private final int depth;
+        private final AnalysisResult result;
+
+        Node(URL url, URL parent, int depth, AnalysisResult result) {
+            this.url = url;
+            this.parent = parent;
+            this.depth = depth;
+            this.result = result;
+        }
+
+        public URL getURL() {
+            return url;
+        }
+
+        /** @return the descriptor that first referred to this one, or null
+        for the root. */
+        public URL getParent() {
+            return parent;
+        }
+
+        /** @return 0 for the root, 1 for its extensions and so on. */
+        public int getDepth() {
+            return depth;
+        }
+
+        public AnalysisResult getResult() {
+            return result;
+        }
+    }
+
+    /** Crawl on a pool shared by the whole process, following extensions
+    up to {@link #DEFAULT_MAX_DEPTH} deep. */
+    public ExtensionCrawler() {
+        this(new JNLPAnalyser());
+    }
+
+    /** As {@link #ExtensionCrawler()}, analysing with <code>analyser</code>. */
+    public ExtensionCrawler(JNLPAnalyser analyser) {
+        this(analyser, getDefaultExecutor(), DEFAULT_MAX_DEPTH);
+    }
+
+    /** @param analyser analyses each descriptor of the graph.
+    @param executor fetches and parses the descriptors.  It must not be a
+    pool whose threads call {@link #crawl(URL)}, or they may all end up
+    waiting.
+    @param maxDepth the deepest extension to analyse, the root being 0. */
+    public ExtensionCrawler(JNLPAnalyser analyser, Executor executor, int maxDepth) {
+        if (maxDepth<0) {
+            throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        }
+        this.analyser = analyser;
+        this.executor = executor;
+        this.maxDepth = maxDepth;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor==null) {
+            defaultExecutor = NetworkExecutors.newExecutor("janela-crawler-",
+                DEFAULT_THREADS);
+        }
+        return defaultExecutor;
+    }
+
+    /** Share the probes of resources between all descriptors analysed.
+    By default every crawl shares a new prober among its own descriptors. */
+    public void setResourceProber(ResourceProber resourceProber) {
+        this.resourceProber = resourceProber;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** @return the descriptors of the graph, root first, then level by
+    level in document order. */
+    public List<Node> crawl(URL root) throws InterruptedException {
+        return crawl(root, null);
+    }
+
+    /** As {@link #crawl(URL)}, telling <code>listener</code> (if not null)
+    about each descriptor in the same order. */
+    public List<Node> crawl(URL root, Listener listener) throws InterruptedException {
+        try {
+            return crawlAsync(root, listener).get();
+        } catch(ExecutionException ee) {
+            // analyses report their own problems, this is a bug
+            throw new IllegalStateException(ee.getCause());
+        }
+    }
+
+    /** Start crawling from <code>root</code>, telling <code>listener</code>
+    (if not null) about each descriptor as {@link #crawl(URL)} orders them.
+    No thread waits for a level to finish, the next level is started by
+    the analysis that completes the current one.
+    @return the descriptors of the graph, once all are analysed. */
+    public CompletableFuture<List<Node>> crawlAsync(URL root, Listener listener) {
+        return crawlAsync(Collections.singletonList(root), listener,
+            executor, Integer.MAX_VALUE);
+    }
+
+    /** As {@link #crawlAsync(URL, Listener)}, from all of <code>roots</code>
+    in one crawl, so each URL is analysed once across them all.  The roots
+    are the first level, and an extension shared by several descriptors is
+    a node of the first to refer to it.
+    @param executor fetches and parses the descriptors, in place of the
+    one of the crawler.
+    @param parallelism the most descriptors analysed at the same time. */
+    public CompletableFuture<List<Node>> crawlAsync(List<URL> roots, Listener listener,
+            Executor executor, int parallelism) {
+        if (parallelism<1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        ResourceProber prober = resourceProber != null
+            ? resourceProber
+            : new ResourceProber(analyser.getHttpCache());
+        Crawl crawl = new Crawl(prober, listener, executor, parallelism);
+        List<URL> level = new ArrayList<URL>();
+        List<URL> parents = new ArrayList<URL>();
+        for (URL root : roots) {
+            if (crawl.visited.add(root.toExternalForm())) {
+                level.add(root);
+                parents.add(null);
+            }
+        }
+        return crawl.analyse(level, parents, 0);
+    }
+
+    /** The state of one crawl, only touched by one level at a time. */
+    private class Crawl {
+
+        private final ResourceProber prober;
+        private final Listener listener;
+        private final Executor executor;
+        private final int parallelism;
+        private final List<Node> nodes = new ArrayList<Node>();
+        private final Set<String> visited = new HashSet<String>();
+        private final Map<String, List<String>> references = new HashMap<String, List<String>>();
+
+        Crawl(ResourceProber prober, Listener listener, Executor executor,
+                int parallelism) {
+            this.prober = prober;
+            this.listener = listener;
+            this.executor = executor;
+            this.parallelism = parallelism;
+        }
+
+        /** Analyse <code>level</code>, then the levels below it. */
+        CompletableFuture<List<Node>> analyse(final List<URL> level,
+                final List<URL> parents, final int depth) {
+            final List<CompletableFuture<AnalysisResult>> futures =
+                new ArrayList<CompletableFuture<AnalysisResult>>(level.size());
+            for (int ii=0; ii<level.size(); ii++) {
+                final URL url = level.get(ii);
+                if (ii<parallelism) {
+                    futures.add( analyser.analyzeAsync(url, prober, executor) );
+                } else {
+                    // each one takes the place of one that is done
+                    futures.add( futures.get(ii - parallelism)
+                        .handle(new BiFunction<AnalysisResult, Throwable, Void>() {
+                            public Void apply(AnalysisResult result, Throwable failure) {
+                                return null;
+                            }
+                        })
+                        .thenCompose(new Function<Void, CompletableFuture<AnalysisResult>>() {
+                            public CompletableFuture<AnalysisResult> apply(Void done) {
+                                return analyser.analyzeAsync(url, prober, executor);
+                            }
+                        }) );
+                }
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+                .thenCompose(new Function<Void, CompletableFuture<List<Node>>>() {
+                    public CompletableFuture<List<Node>> apply(Void done) {
+                        List<AnalysisResult> results = new ArrayList<AnalysisResult>(level.size());
+                        for (CompletableFuture<AnalysisResult> future : futures) {
+                            results.add( future.join() );
+                        }
+                        return examine(level, parents, depth, results);
+                    }
+                });
+        }
+
+        /** Report the descriptors of <code>level</code> and move on to
+        their extensions. */
+        private CompletableFuture<List<Node>> examine(List<URL> level,
+                List<URL> parents, int depth, List<AnalysisResult> results) {
+            List<URL> nextLevel = new ArrayList<URL>();
+            List<URL> nextParents = new ArrayList<URL>();
+            for (int ii=0; ii<level.size(); ii++) {
+                URL url = level.get(ii);
+                AnalysisResult result = results.get(ii);
+                String key = url.toExternalForm();
+                List<String> referred = new ArrayList<String>();
+                references.put(key, referred);
+
+                List<LaunchError> warnings = new ArrayList<LaunchError>();
+                for (URL extension : result.getExtensions()) {
+                    String extensionKey = extension.toExternalForm();
+                    referred.add(extensionKey);
+                    if (visited.contains(extensionKey)) {
+                        if (isReachable(extensionKey, key, references)) {
+                            warnings.add( new LaunchError(
+                                "Extension " + extension + " leads back to "
+                                + url + ", the extensions form a cycle.",
+                                null, ErrorLevel.WARNING) );
+                        }
+                    } else if (depth + 1>maxDepth) {
+                        warnings.add( new LaunchError(
+                            "Extension " + extension + " was not analysed, "
+                            + "it is nested more than " + maxDepth + " deep.",
+                            null, ErrorLevel.WARNING) );
+                    } else {
+                        visited.add(extensionKey);
+                        nextLevel.add(extension);
+                        nextParents.add(url);
+                    }
+                }
+
+                Node node = new Node(url, parents.get(ii), depth,
+                    result.withErrors(warnings));
+                nodes.add(node);
+                if (listener!=null) {
+                    listener.analysed(node);
+                }
+            }
+            if (nextLevel.isEmpty()) {
+                return CompletableFuture.completedFuture(nodes);
+            }
+            return analyse(nextLevel, nextParents, depth + 1);
+        }
+    }
+
+    /** @return true if <code>to</code> can be reached from
+    <code>from</code> through the references examined so far. */
+    private static boolean isReachable(String from, String to,
+            Map<String, List<String>> references) {
+        Set<String> seen = new HashSet<String>();
+        List<String> pending = new ArrayList<String>();
+        pending.add(from);
+        while (!pending.isEmpty()) {
+            String key = pending.remove(pending.size() - 1);
+            if (key.equals(to)) {
+                return true;
+            }
+            List<String> referred = references.get(key);
+            if (referred!=null && seen.add(key)) {
+                pending.addAll(referred);
+            }
+        }
+        return false;
+    }
+}
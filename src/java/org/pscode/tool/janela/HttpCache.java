@@ -0,0 +1,517 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A disk cache of what JaNeLA learns about HTTP resources, kept between
+runs and keyed by URL.
+<p>
+Every entry records the response headers and validators (ETag and
+Last-Modified) of a resource.  Descriptors are stored with their body;
+for jars and icons only the facts the checks derive from them (the
+native libraries in a jar, the size of an icon) are stored, so a
+resource that has not changed is neither downloaded nor range-read again.
+Entries are revalidated with If-None-Match / If-Modified-Since, and
+facts are only handed out once their entry has been revalidated by this
+cache instance.  The least recently used entries are evicted when the
+cache grows beyond its size limit.
+<p>
+The default cache lives in <code>~/.janela/cache</code> and holds up to
+64 MB.  The system properties <code>janela.cache.dir</code> and
+<code>janela.cache.size</code> (in bytes, 0 to turn the cache off)
+override that. */
+public class HttpCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final boolean DEBUG = false;
+
+    private static final String META = ".properties";
+    private static final String BODY = ".body";
+
+    private static final String URL_KEY = "url";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String CONTENT_TYPE = "content-type";
+    private static final String CONTENT_ENCODING = "content-encoding";
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final String VALIDATED = "validated";
+    private static final String FACT = "fact.";
+
+    private static HttpCache defaultCache;
+    private static boolean defaultCreated;
+
+    private final File directory;
+    private final long maxSize;
+    private final long sessionStart = System.currentTimeMillis();
+    private final AtomicLong size = new AtomicLong(-1);
+    private final ConcurrentMap<String, Object> locks =
+        new ConcurrentHashMap<String, Object>();
+
+    public HttpCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /** @return the cache configured by the system properties, or null if
+    it is turned off or its directory can not be created. */
+    public static synchronized HttpCache getDefault() {
+        if (!defaultCreated) {
+            defaultCreated = true;
+            long maxSize = DEFAULT_MAX_SIZE;
+            String sizeProperty = System.getProperty("janela.cache.size");
+            if (sizeProperty!=null) {
+                try {
+                    maxSize = Long.parseLong(sizeProperty.trim());
+                } catch(NumberFormatException nfe) {
+                    debug("Ignoring janela.cache.size=" + sizeProperty);
+                }
+            }
+            String dirProperty = System.getProperty("janela.cache.dir");
+            File dir = dirProperty == null
+                ? new File(System.getProperty("user.home"), ".janela" + File.separator + "cache")
+                : new File(dirProperty);
+            if (maxSize>0 && (dir.isDirectory() || dir.mkdirs())) {
+                defaultCache = new HttpCache(dir, maxSize);
+            }
+        }
+        return defaultCache;
+    }
+
+    /** @return true for the URLs this cache handles, http and https. */
+    public static boolean isCacheable(URL url) {
+        String protocol = url.getProtocol();
+        return "http".equals(protocol) || "https".equals(protocol);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /** What is known about one URL. */
+    public static class Entry {
+
+        private final Properties properties;
+        private final File body;
+        private final boolean fresh;
+
+        Entry(Properties properties, File body, boolean fresh) {
+            this.properties = properties;
+            this.body = body;
+            this.fresh = fresh;
+        }
+
+        public String getETag() {
+            return properties.getProperty(ETAG);
+        }
+
+        /** @return the Last-Modified time in millis, or 0 if not known. */
+        public long getLastModified() {
+            return getLong(LAST_MODIFIED, 0);
+        }
+
+        public String getContentType() {
+            return properties.getProperty(CONTENT_TYPE);
+        }
+
+        public String getContentEncoding() {
+            return properties.getProperty(CONTENT_ENCODING);
+        }
+
+        public long getContentLength() {
+            return getLong(CONTENT_LENGTH, -1);
+        }
+
+        /** @return true if the entry was revalidated by this cache. */
+        public boolean isFresh() {
+            return fresh;
+        }
+
+        /** @return the stored body, or null if only headers were kept. */
+        public File getBody() {
+            return body;
+        }
+
+        public String getFact(String name) {
+            return properties.getProperty(FACT + name);
+        }
+
+        private long getLong(String key, long defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Long.parseLong(value);
+            } catch(NumberFormatException nfe) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /** @return the entry for <code>url</code>, or null if there is none. */
+    public Entry get(URL url) {
+        String key = getKey(url);
+        synchronized (getLock(key)) {
+            Properties properties = load(key);
+            if (properties==null) {
+                return null;
+            }
+            // the meta file's time stamp is the last use, for the LRU order
+            getMetaFile(key).setLastModified(System.currentTimeMillis());
+            return toEntry(key, properties);
+        }
+    }
+
+    /** Ask <code>urlc</code> to only send the resource if it changed since
+    the cached copy was made.
+    @return the cached entry the request is conditional on, or null. */
+    public Entry addValidators(URLConnection urlc) {
+        Entry entry = get(urlc.getURL());
+        addValidators(urlc, entry);
+        return entry;
+    }
+
+    /** Make <code>urlc</code> conditional on the given entry, if any. */
+    public void addValidators(URLConnection urlc, Entry entry) {
+        if (entry!=null) {
+            if (entry.getETag()!=null) {
+                urlc.setRequestProperty("If-None-Match", entry.getETag());
+            }
+            if (entry.getLastModified()>0) {
+                urlc.setIfModifiedSince(entry.getLastModified());
+            }
+        }
+    }
+
+    /** Record that the server answered 304 Not Modified for the URL.
+    @return the entry, now fresh. */
+    public Entry revalidated(URL url) {
+        String key = getKey(url);
+        Entry entry;
+        boolean full;
+        synchronized (getLock(key)) {
+            Properties properties = load(key);
+            if (properties==null) {
+                return null;
+            }
+            properties.setProperty(VALIDATED, String.valueOf(System.currentTimeMillis()));
+            full = save(key, properties, null);
+            entry = toEntry(key, properties);
+        }
+        evictIf(full);
+        return entry;
+    }
+
+    /** Record the headers of a full response.  Facts and a body recorded
+    for different validators are dropped.  A response without validators
+    can not be revalidated and is not cached.
+    @param body the body to keep, or null to keep the headers only.
+    @return the updated entry, or null if nothing was cached. */
+    public Entry update(URLConnection urlc, byte[] body) {
+        URL url = urlc.getURL();
+        String eTag = urlc.getHeaderField("ETag");
+        long lastModified = urlc.getLastModified();
+        String key = getKey(url);
+        Entry entry;
+        boolean full;
+        synchronized (getLock(key)) {
+            if (eTag==null && lastModified<=0) {
+                remove(key);
+                return null;
+            }
+            Properties properties = load(key);
+            if (properties==null || !sameValidators(properties, eTag, lastModified)) {
+                properties = new Properties();
+                getBodyFile(key).delete();
+            }
+            properties.setProperty(URL_KEY, url.toExternalForm());
+            setOrRemove(properties, ETAG, eTag);
+            setOrRemove(properties, LAST_MODIFIED,
+                lastModified > 0 ? String.valueOf(lastModified) : null);
+            setOrRemove(properties, CONTENT_TYPE, urlc.getContentType());
+            setOrRemove(properties, CONTENT_ENCODING, urlc.getContentEncoding());
+            long length = body != null ? body.length : urlc.getContentLengthLong();
+            setOrRemove(properties, CONTENT_LENGTH,
+                length >= 0 ? String.valueOf(length) : null);
+            properties.setProperty(VALIDATED, String.valueOf(System.currentTimeMillis()));
+            full = save(key, properties, body);
+            entry = toEntry(key, properties);
+        }
+        evictIf(full);
+        return entry;
+    }
+
+    /** @return a fact derived from the resource, if its entry is fresh. */
+    public String getFact(URL url, String name) {
+        Entry entry = get(url);
+        return entry != null && entry.isFresh() ? entry.getFact(name) : null;
+    }
+
+    /** Remember a fact derived from the resource, as long as its entry is
+    fresh (otherwise the fact might describe a different version). */
+    public void putFact(URL url, String name, String value) {
+        String key = getKey(url);
+        boolean full = false;
+        synchronized (getLock(key)) {
+            Properties properties = load(key);
+            if (properties!=null && isFresh(properties)) {
+                properties.setProperty(FACT + name, value);
+                full = save(key, properties, null);
+            }
+        }
+        evictIf(full);
+    }
+
+    private boolean sameValidators(Properties properties, String eTag, long lastModified) {
+        String oldETag = properties.getProperty(ETAG);
+        String oldLastModified = properties.getProperty(LAST_MODIFIED);
+        String newLastModified = lastModified > 0 ? String.valueOf(lastModified) : null;
+        return (oldETag == null ? eTag == null : oldETag.equals(eTag))
+            && (oldLastModified == null
+                ? newLastModified == null
+                : oldLastModified.equals(newLastModified));
+    }
+
+    private boolean isFresh(Properties properties) {
+        try {
+            return Long.parseLong(properties.getProperty(VALIDATED, "0"))>=sessionStart;
+        } catch(NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    private Entry toEntry(String key, Properties properties) {
+        File body = getBodyFile(key);
+        return new Entry(properties, body.isFile() ? body : null, isFresh(properties));
+    }
+
+    private static void setOrRemove(Properties properties, String key, String value) {
+        if (value==null) {
+            properties.remove(key);
+        } else {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private Object getLock(String key) {
+        Object lock = locks.get(key);
+        if (lock==null) {
+            Object created = new Object();
+            lock = locks.putIfAbsent(key, created);
+            if (lock==null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    private Properties load(String key) {
+        File meta = getMetaFile(key);
+        if (!meta.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream is = new FileInputStream(meta);
+            try {
+                properties.load(is);
+            }
+            finally {
+                is.close();
+            }
+        } catch(IOException ioe) {
+            // unreadable, treat it as missing
+            return null;
+        }
+        return properties;
+    }
+
+    /** Write an entry, with the lock of its key held.
+    @return true if the cache is now over its limit.  The caller evicts
+    once it has let go of the lock, as eviction takes the locks of the
+    entries it removes. */
+    private boolean save(String key, Properties properties, byte[] body) {
+        File meta = getMetaFile(key);
+        long before = meta.length() + getBodyFile(key).length();
+        try {
+            if (body!=null) {
+                write(getBodyFile(key), body);
+            }
+            File temp = File.createTempFile(key, ".tmp", directory);
+            OutputStream os = new FileOutputStream(temp);
+            try {
+                properties.store(os, null);
+            }
+            finally {
+                os.close();
+            }
+            Files.move(temp.toPath(), meta.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException ioe) {
+            // a cache that can not be written is merely slow
+            debug("Could not write cache entry " + meta + ": " + ioe.getMessage());
+            return false;
+        }
+        long after = meta.length() + getBodyFile(key).length();
+        if (getSize() + (after - before)>maxSize) {
+            return true;
+        }
+        size.addAndGet(after - before);
+        return false;
+    }
+
+    private void evictIf(boolean full) {
+        if (full) {
+            evict();
+        }
+    }
+
+    private void write(File file, byte[] data) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        OutputStream os = new FileOutputStream(temp);
+        try {
+            os.write(data);
+        }
+        finally {
+            os.close();
+        }
+        Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void remove(String key) {
+        long freed = getMetaFile(key).length() + getBodyFile(key).length();
+        getMetaFile(key).delete();
+        getBodyFile(key).delete();
+        if (freed>0 && size.get()>=0) {
+            size.addAndGet(-freed);
+        }
+    }
+
+    private long getSize() {
+        long current = size.get();
+        if (current<0) {
+            current = 0;
+            File[] files = directory.listFiles();
+            if (files!=null) {
+                for (File file : files) {
+                    current += file.length();
+                }
+            }
+            size.compareAndSet(-1, current);
+        }
+        return size.get();
+    }
+
+    /** Delete the least recently used entries until the cache is back
+    under three quarters of its limit.  Never called with the lock of a
+    key held. */
+    private synchronized void evict() {
+        File[] metas = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(META);
+            }
+        });
+        if (metas==null) {
+            return;
+        }
+        final long[] used = new long[metas.length];
+        for (int ii=0; ii<metas.length; ii++) {
+            used[ii] = metas[ii].lastModified();
+        }
+        Integer[] order = new Integer[metas.length];
+        for (int ii=0; ii<order.length; ii++) {
+            order[ii] = ii;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(used[a], used[b]);
+            }
+        });
+
+        long total = 0;
+        for (File file : directory.listFiles()) {
+            total += file.length();
+        }
+        long target = maxSize / 4 * 3;
+        for (int ii=0; ii<order.length && total>target; ii++) {
+            File meta = metas[order[ii]];
+            String key = meta.getName().substring(0, meta.getName().length() - META.length());
+            synchronized (getLock(key)) {
+                File body = getBodyFile(key);
+                total -= meta.length() + body.length();
+                meta.delete();
+                body.delete();
+            }
+        }
+        size.set(total);
+    }
+
+    private File getMetaFile(String key) {
+        return new File(directory, key + META);
+    }
+
+    private File getBodyFile(String key) {
+        return new File(directory, key + BODY);
+    }
+
+    private static String getKey(URL url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.toExternalForm().getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch(NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        } catch(IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    private static void debug(Object obj) {
+        if (DEBUG) {
+            System.out.println(obj);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/** Reads the width and height of GIF, JPEG and PNG images from their
+headers, without decoding them and without AWT.
+<p>
+Over HTTP the image is read in small Range requests, so a GIF or PNG
+costs one request for its first block, and a JPEG only fetches the
+segment headers up to its frame header, skipping over the bodies of any
+segments (e.g. EXIF data) before it. */
+public class ImageHeaderReader {
+
+    /** The size of each ranged read. */
+    static final int BLOCK = 512;
+
+    private static final int PNG_SIGNATURE = 0x89504E47;
+
+    /** The width and height of an image. */
+    public static class Size {
+        private final int width;
+        private final int height;
+
+        public Size(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+
+    /** @return the size of the image, or null if it is not a GIF, JPEG
+    or PNG. */
+    public Size readSize(URL url) throws IOException {
+        InputStream is = openStream(url);
+        try {
+            return readSize(is);
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    /** @return the size of the image read from the start of
+    <code>is</code>, or null if it is not a GIF, JPEG or PNG. */
+    public Size readSize(InputStream is) throws IOException {
+        int b0 = readByte(is);
+        int b1 = readByte(is);
+        int b2 = readByte(is);
+        int b3 = readByte(is);
+        if (b0=='G' && b1=='I' && b2=='F') {
+            // rest of GIF87a/GIF89a, then the logical screen size, little-endian
+            skipFully(is, 2);
+            int width = readByte(is) | (readByte(is) << 8);
+            int height = readByte(is) | (readByte(is) << 8);
+            return new Size(width, height);
+        }
+        if (((b0 << 24) | (b1 << 16) | (b2 << 8) | b3)==PNG_SIGNATURE) {
+            // rest of the signature, IHDR length and type, then the size
+            skipFully(is, 4 + 4 + 4);
+            int width = readInt(is);
+            int height = readInt(is);
+            return new Size(width, height);
+        }
+        if (b0==0xFF && b1==0xD8 && b2==0xFF) {
+            return readJpegSize(is, b3);
+        }
+        return null;
+    }
+
+    /** Walk the JPEG segments from <code>marker</code> to the first frame
+    header, skipping the segment bodies. */
+    private Size readJpegSize(InputStream is, int marker) throws IOException {
+        while (true) {
+            while (marker==0xFF) {
+                // fill bytes
+                marker = readByte(is);
+            }
+            if (marker==0x01 || (marker>=0xD0 && marker<=0xD8)) {
+                // markers without a length
+                marker = nextMarker(is);
+                continue;
+            }
+            if (marker==0xD9 || marker==0xDA) {
+                // end of image, or start of scan with no frame seen
+                return null;
+            }
+            int length = (readByte(is) << 8) | readByte(is);
+            if (isStartOfFrame(marker)) {
+                readByte(is); // precision
+                int height = (readByte(is) << 8) | readByte(is);
+                int width = (readByte(is) << 8) | readByte(is);
+                return new Size(width, height);
+            }
+            if (length<2) {
+                return null;
+            }
+            skipFully(is, length - 2);
+            marker = nextMarker(is);
+        }
+    }
+
+    private static int nextMarker(InputStream is) throws IOException {
+        int b = readByte(is);
+        while (b!=0xFF) {
+            b = readByte(is);
+        }
+        return readByte(is);
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker>=0xC0 && marker<=0xCF
+            && marker!=0xC4 && marker!=0xC8 && marker!=0xCC;
+    }
+
+    private InputStream openStream(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new FileInputStream(new File(url.toURI()));
+            } catch(URISyntaxException use) {
+                // fall through to a plain stream
+            } catch(IllegalArgumentException iae) {
+                // as above
+            }
+        }
+        if ("http".equals(url.getProtocol()) || "https".equals(url.getProtocol())) {
+            return new RangeInputStream(url);
+        }
+        return url.openStream();
+    }
+
+    private static int readByte(InputStream is) throws IOException {
+        int b = is.read();
+        if (b<0) {
+            throw new EOFException("Image header ended early");
+        }
+        return b;
+    }
+
+    private static int readInt(InputStream is) throws IOException {
+        return (readByte(is) << 24) | (readByte(is) << 16)
+            | (readByte(is) << 8) | readByte(is);
+    }
+
+    private static void skipFully(InputStream is, long count) throws IOException {
+        while (count>0) {
+            long skipped = is.skip(count);
+            if (skipped<=0) {
+                readByte(is);
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /** A forward-only stream over an HTTP resource that fetches a block
+    at a time with Range requests, so skipping costs nothing.  If the
+    server ignores ranges the full response is read (and discarded up to
+    the wanted position) instead. */
+    static class RangeInputStream extends InputStream {
+
+        private final URL url;
+        private long position;
+        private byte[] block = new byte[0];
+        private long blockStart;
+        private InputStream whole;
+        private long wholePosition;
+
+        RangeInputStream(URL url) {
+            this.url = url;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (whole!=null) {
+                return readWhole();
+            }
+            if (position<blockStart || position>=blockStart + block.length) {
+                if (!fetch()) {
+                    return whole == null ? -1 : readWhole();
+                }
+            }
+            return block[(int)(position++ - blockStart)] & 0xff;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n<=0) {
+                return 0;
+            }
+            position += n;
+            return n;
+        }
+
+        /** @return false at the end of the resource, or when the server
+        sent the whole resource instead of a range. */
+        private boolean fetch() throws IOException {
+            HttpURLConnection http = (HttpURLConnection)url.openConnection();
+            http.setRequestProperty("Range",
+                "bytes=" + position + "-" + (position + BLOCK - 1));
+            http.setRequestProperty("Accept-Encoding", "identity");
+            int status = http.getResponseCode();
+            if (status==416) {
+                http.disconnect();
+                return false;
+            }
+            if (status>=400) {
+                http.disconnect();
+                throw new IOException("Server returned HTTP " + status + " for " + url);
+            }
+            InputStream is = http.getInputStream();
+            if (status!=HttpURLConnection.HTTP_PARTIAL) {
+                whole = is;
+                wholePosition = 0;
+                return false;
+            }
+            try {
+                block = DescriptorSnapshot.readFully(is);
+                blockStart = position;
+            }
+            finally {
+                is.close();
+            }
+            return block.length>0;
+        }
+
+        private int readWhole() throws IOException {
+            while (wholePosition<position) {
+                long skipped = whole.skip(position - wholePosition);
+                if (skipped<=0) {
+                    if (whole.read()<0) {
+                        return -1;
+                    }
+                    skipped = 1;
+                }
+                wholePosition += skipped;
+            }
+            int b = whole.read();
+            if (b>=0) {
+                wholePosition++;
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (whole!=null) {
+                whole.close();
+            }
+        }
+    }
+}
@@ -18,1222 +18,612 @@
  ******************************************************************************/
 package org.pscode.tool.janela;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URI;
+import java.io.Reader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import javax.swing.ImageIcon;
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.validation.Validator;
 
 import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.model.DescriptorDiff;
+import org.pscode.tool.janela.model.DescriptorStreamHandler;
+import org.pscode.tool.janela.model.JNLPDescriptor;
+import org.pscode.tool.janela.model.JavaRuntime;
+import org.pscode.tool.janela.model.Resource;
+import org.pscode.tool.janela.model.Security;
+import org.pscode.tool.janela.rule.ElementContext;
+import org.pscode.tool.janela.rule.ElementResults;
+import org.pscode.tool.janela.rule.ElementRule;
+import org.pscode.tool.janela.rule.Rule;
+import org.pscode.tool.janela.rule.RuleContext;
+import org.pscode.tool.janela.rule.RuleExecutor;
 import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+/** Analyses JNLP descriptors.  An analyser holds only configuration and
+the caches it shares, every analysis keeps its state to itself, so one
+instance can run any number of analyses at the same time.  The setters
+are meant for setting up the analyser before it is shared. */
 public class JNLPAnalyser {
     private static final boolean DEBUG = false;
     private static final String contentType = "application/x-java-jnlp-file";
 
-    private final URL page;
-    private final List<LaunchError> errors = new ArrayList<LaunchError>();
-    private final List<URL> extensions = new ArrayList<URL>();
-    private boolean xmlValid;
+    /** Runs each stage of a blocking analysis in the calling thread. */
+    private static final Executor CALLER = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
 
-    private ListErrorHandler errorHandler;
-    private Document document;
+    private volatile ResourceVerifier resourceVerifier = ResourceVerifier.getDefault();
+    private volatile ResourceProber sharedProber;
+    private volatile HttpCache httpCache = HttpCache.getDefault();
+    private volatile List<Rule> rules = RuleExecutor.getDefaultRules();
+    private volatile RuleExecutor ruleExecutor = RuleExecutor.getDefault();
+    private volatile boolean offline;
+    private volatile boolean streaming;
 
-    public JNLPAnalyser(URL url) {
-        this.page = url;
-    }
-    
-    public boolean isXMLValid() {
-        return xmlValid;
-    }
-    
-    public List<LaunchError> getErrors() {
-        return errors;
-    }
-    
-    public List<URL> getExtensions() {
-        return extensions;
+    public void setResourceVerifier(ResourceVerifier resourceVerifier) {
+        this.resourceVerifier = resourceVerifier;
     }
-    
-    public String getReport() {
-        StringBuffer sb = new StringBuffer("Report for ");
-        sb.append( getURL() );
-        sb.append( "\n\n" );
-
-        for (LaunchError error : errors) {
-            sb.append( error );
-            sb.append( "\n" );
-        }
 
-        return sb.toString();
+    /** Use <code>httpCache</code> for descriptors and resources, or no
+    cache at all if it is null.  The default is {@link HttpCache#getDefault()}. */
+    public void setHttpCache(HttpCache httpCache) {
+        this.httpCache = httpCache;
     }
 
-    public URL getURL() {
-        return page;
+    public HttpCache getHttpCache() {
+        return httpCache;
     }
 
-
-    public void checkResource() {
-        NodeList nodeList;
-        nodeList = document.getElementsByTagName("jar");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkJarResource(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("nativelib");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkNativeLibResource(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("extension");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkExtensionResource(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("icon");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkIconResource(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("help");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkLinkResource(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("homepage");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkLinkResource(nodeList.item(ii));
-        }
+    /** Share the probes of resources between all analyses.  Without a
+    shared prober every analysis probes its resources afresh. */
+    public void setResourceProber(ResourceProber resourceProber) {
+        this.sharedProber = resourceProber;
     }
 
-    public void checkJarResource(Node resource) {
-        try {
-            // should be 1st check..
-            checkResourceAvailability(resource);
-
-            // check other aspects of this resource
-            String[] types = {
-                "jar"
-            };
-            checkResourceType(resource, types);
-            checkResourceHrefOptimisation(resource);
-
-            checkResourceSize(resource);
-
-//            checkDefaultValueSpecified(resource);
-
-            checkLazyForNonMain(resource);
-
-            checkLazyHasPart(resource);
-        } catch(IOException ioe) {
-            addResourceFetchError(resource, ioe, true);
-        } catch(Exception e) {
-            addException(e);
-        }
+    /** Run <code>rules</code> instead of those registered with the
+    ServiceLoader. */
+    public void setRules(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
     }
 
-    public void checkNativeLibResource(Node resource) {
-        try {
-            // should be 1st check..
-            checkResourceAvailability(resource);
-
-            // check other aspects of this resource
-            String[] types = {
-                "jar"
-            };
-            checkResourceType(resource, types);
-            checkResourceHrefOptimisation(resource);
-
-            checkResourceSize(resource);
-
-            checkLibIsInTrusted(resource);
-
-            checkLibIsInRoot(resource);
-
-            checkLibIsOptimized(resource);
-
-            checkDefaultValueSpecified(resource);
-
-            checkLazyForNonMain(resource);
-
-            checkLazyHasPart(resource);
-
-        } catch(IOException ioe) {
-            addResourceFetchError(resource, ioe, true);
-        } catch(Exception e) {
-            addException(e);
-        }
+    public void setRuleExecutor(RuleExecutor ruleExecutor) {
+        this.ruleExecutor = ruleExecutor;
     }
 
-    public void checkDefaultValueSpecified(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        Node downloadNode = attributes.getNamedItem("download");
-        if (downloadNode!=null && downloadNode.getTextContent().equals("eager") ) {
-            LaunchError launchError = new LaunchError(
-                "The resource download at " +
-                hrefNode.getTextContent() +
-                " can be optimized by removing the (default) value of download='eager'.",
-                (Exception)null,
-                ErrorLevel.OPTIMIZE
-                );
-            errors.add( launchError );
-        }
-        Node mainNode = attributes.getNamedItem("main");
-        if (mainNode!=null && mainNode.getTextContent().equals("false") ) {
-            LaunchError launchError = new LaunchError(
-                "The resource download at " +
-                hrefNode.getTextContent() +
-                " can be optimized by removing the (default) value of main='false'.",
-                (Exception)null,
-                ErrorLevel.OPTIMIZE
-                );
-            errors.add( launchError );
-        }
+    /** Lint without the network: only local descriptors are read, their
+    content type is not checked, and the rules fetch no resources. */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
     }
 
-    public void checkLibIsOptimized(Node node) {
-        // this will be a j2se/java element
-        Node parent = node.getParentNode();
-        NamedNodeMap attributes = parent.getAttributes();
-        Node osNode = attributes.getNamedItem("os");
-        Node platformNode = attributes.getNamedItem("platform");
-        if (osNode==null && platformNode==null) {
-            Node hrefNode = node.getAttributes().getNamedItem("href");
-            LaunchError launchError = new LaunchError(
-                "The download can be optimized by including the nativelib " +
-                hrefNode.getTextContent() +
-                " in an os/platform specific resources element",
-                (Exception)null,
-                ErrorLevel.OPTIMIZE
-                );
-            
-            errors.add( launchError );
-        }
+    public boolean isOffline() {
+        return offline;
     }
 
-    public void checkLibIsInTrusted(Node node) {
-        if (document.getElementsByTagName("all-permissions").getLength()!=1) {
-            Node hrefNode = node.getAttributes().getNamedItem("href");
-            LaunchError launchError = new LaunchError(
-                "Native lib " +
-                hrefNode.getTextContent() +
-                " requires 'all-permissions'.",
-                (Exception)null,
-                ErrorLevel.ERROR
-                );
-            errors.add( launchError );
-        }
+    /** Check descriptors while they stream in, for generated descriptors
+    too large to hold.  The descriptor is validated and handed to the
+    {@link ElementRule}s one element at a time as it is read, and neither
+    its text nor a model of it is kept, so the memory used grows with what
+    the rules report rather than with the descriptor.  Only the element
+    rules run, on the declarations; nothing else is fetched, and the
+    descriptor is not cached. */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
     }
 
-    public void checkLibIsInRoot(Node node) throws IOException {
-        Node hrefNode = node.getAttributes().getNamedItem("href");
-        URL url = getCodeBase();
-        URL nativelib = new URL(url, hrefNode.getTextContent() );
-        ZipInputStream zis = new ZipInputStream(nativelib.openStream());
-        try {
-            ZipEntry ze;
-            while ((ze = zis.getNextEntry()) !=null) {
-                String name = ze.getName();
-                if ( name.endsWith(".dll") || name.endsWith(".so") ) {
-                    if ( name.indexOf("/")!=-1 ) {
-                        LaunchError launchError = new LaunchError(
-                            "Native lib " +
-                            name +
-                            " must be in the root of " +
-                            hrefNode.getTextContent() +
-                            ".",
-                            (Exception)null,
-                            ErrorLevel.ERROR);
-                        errors.add( launchError );
-                    }
-                }
-            }
-        }
-        finally {
-                zis.close();
-        }
+    public boolean isStreaming() {
+        return streaming;
     }
 
-    public void checkExtensionResource(Node resource) {
-        try {
-            // should be 1st check..
-            checkResourceAvailability(resource);
-
-            // check other aspects of this resource
-            String[] types = {
-                "jnlp"
-            };
-            checkResourceType(resource, types);
-            checkResourceHrefOptimisation(resource);
-
-            NamedNodeMap attributes = resource.getAttributes();
-            Node hrefNode = attributes.getNamedItem("href");
-            try {
-                URL url = new URL(getCodeBase(), hrefNode.getTextContent() );
-                extensions.add(url);
-            } catch(MalformedURLException murle) {
-                addException(murle);
-            }
-
-        } catch(IOException ioe) {
-            addResourceFetchError(resource, ioe, true);
-        } catch(Exception e) {
-            addException(e);
-        }
+    /** Analyse the descriptor at <code>page</code>. */
+    public AnalysisResult analyze(URL page) {
+        return analyze(page, sharedProber);
     }
 
-    public void checkIconResource(Node resource) {
-        try {
-            // should be 1st check..
-            checkResourceAvailability(resource);
-
-            // check other aspects of this resource
-            String[] types = {
-                "gif",
-                "jpg",
-                "jpeg"
-            };
-            checkResourceType(resource, types);
-            checkResourceHrefOptimisation(resource);
+    /** Analyse the descriptor at <code>page</code>, sharing the probes of
+    <code>prober</code> (if not null) instead of the configured prober. */
+    public AnalysisResult analyze(URL page, ResourceProber prober) {
+        return analyzeAsync(page, prober, null, CALLER).join();
+    }
 
-            checkResourceSize(resource);
+    /** Analyse the descriptor at <code>page</code> again, checking only the
+    elements that changed since the last analysis with <code>results</code>.
+    The results are updated for the next one. */
+    public AnalysisResult analyze(URL page, ResourceProber prober, ElementResults results) {
+        return analyzeAsync(page, prober, results, CALLER).join();
+    }
 
-            checkIconSize(resource);
+    /** Start analysing the descriptor at <code>page</code>.  The descriptor
+    is fetched and parsed on <code>executor</code>, then the rules run on
+    the pools of the rule executor.
+    @return the result, once all rules are done. */
+    public CompletableFuture<AnalysisResult> analyzeAsync(URL page, Executor executor) {
+        return analyzeAsync(page, sharedProber, executor);
+    }
 
-            checkSplashIconHasHref(resource);
+    /** As {@link #analyzeAsync(URL, Executor)}, sharing the probes of
+    <code>prober</code> (if not null) instead of the configured prober. */
+    public CompletableFuture<AnalysisResult> analyzeAsync(URL page,
+            ResourceProber prober, Executor executor) {
+        return analyzeAsync(page, prober, null, executor);
+    }
 
-        } catch(IOException ioe) {
-            addResourceFetchError(resource, ioe, true);
-        } catch(Exception e) {
-            addException(e);
+    /** As {@link #analyzeAsync(URL, ResourceProber, Executor)}, checking
+    only the elements that changed since the last analysis with
+    <code>results</code>, if not null. */
+    public CompletableFuture<AnalysisResult> analyzeAsync(URL page,
+            ResourceProber prober, ElementResults results, Executor executor) {
+        HttpCache cache = httpCache;
+        if (prober==null) {
+            prober = new ResourceProber(cache);
         }
+        return new Analysis(page, null, prober, cache, results).start(executor);
     }
 
-    public void checkIconSize(Node resource) {
-        NamedNodeMap attributes = resource.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        Node widthNode = attributes.getNamedItem("width");
-        Node heightNode = attributes.getNamedItem("height");
-        if (widthNode!=null && heightNode!=null) {
-            try {
-                URL url = new URL(getCodeBase(), hrefNode.getTextContent());
-                ImageIcon icon = new ImageIcon(url);
-                // make sure the image is reloaded
-                icon.getImage().flush();
-                int actualWidth = icon.getIconWidth();
-                int actualHeight = icon.getIconHeight();
-                try {
-                    int declaredWidth = Integer.parseInt( widthNode.getTextContent() );
-                    if (declaredWidth!=actualWidth) {
-                        LaunchError launchError = new LaunchError(
-                            "Icon at " +
-                            hrefNode.getTextContent() +
-                            " is declared with width " +
-                            declaredWidth +
-                            " but is actually " +
-                            actualWidth +
-                            ".",
-                            (Exception)null,
-                            ErrorLevel.OPTIMIZE
-                            );
-                        errors.add( launchError );
-                    }
-                    int declaredHeight = Integer.parseInt( heightNode.getTextContent() );
-                    if (declaredHeight!=actualHeight) {
-                        LaunchError launchError = new LaunchError(
-                            "Icon at " +
-                            hrefNode.getTextContent() +
-                            " is declared with height " +
-                            declaredHeight +
-                            " but is actually " +
-                            actualHeight +
-                            ".",
-                            (Exception)null,
-                            ErrorLevel.OPTIMIZE
-                            );
-                        errors.add( launchError );
-                    }
-                } catch (Exception e) {
-                    addException(e);
-                }
-            } catch(MalformedURLException murle) {
-                // noted elsewhere, ignore
-            }
-        } else {
-            LaunchError launchError = new LaunchError(
-                "Icon loading & use can be optimized by specifying the width and height for " +
-                hrefNode.getTextContent(),
-                (Exception)null,
-                ErrorLevel.OPTIMIZE
-                );
-            errors.add( launchError );
-        }
+    /** Analyse a descriptor already in memory, taken to have been fetched
+    from {@link DescriptorSnapshot#getURL()}.  The descriptor itself is
+    neither fetched nor cached, and has no content type to check; the
+    rules still check its resources unless working offline. */
+    public AnalysisResult analyze(DescriptorSnapshot snapshot) {
+        return analyzeAsync(snapshot, CALLER).join();
     }
 
-    public void checkLazyHasPart(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        Node partNode = attributes.getNamedItem("part");
-        Node downloadNode = attributes.getNamedItem("download");
-        if (downloadNode!=null && partNode==null && "lazy".equals(downloadNode.getTextContent())) {
-            LaunchError launchError = new LaunchError(
-                "Lazy downloads might not work as expected for " +
-                hrefNode.getTextContent() +
-                " unless the download 'part' is specified. ",
-                (Exception)null,
-                ErrorLevel.WARNING
-                );
-            errors.add( launchError );
+    /** Start analysing a descriptor already in memory, as
+    {@link #analyze(DescriptorSnapshot)} does.
+    @return the result, once all rules are done. */
+    public CompletableFuture<AnalysisResult> analyzeAsync(DescriptorSnapshot snapshot,
+            Executor executor) {
+        HttpCache cache = httpCache;
+        ResourceProber prober = sharedProber;
+        if (prober==null) {
+            prober = new ResourceProber(cache);
         }
+        return new Analysis(snapshot.getURL(), snapshot, prober, cache, null)
+            .start(executor);
     }
 
-    public void checkLazyForNonMain(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        Node mainNode = attributes.getNamedItem("main");
-        Node downloadNode = attributes.getNamedItem("download");
-        if (mainNode == null || mainNode.getTextContent().equals("false") ) {
-            if (downloadNode == null || downloadNode.getTextContent().equals("eager")) {
-                LaunchError launchError = new LaunchError(
-                    "It might be possible to optimize the start-up of the app. by " +
-                    " specifying download='lazy' for the " +
-                    hrefNode.getTextContent() +
-                    " resource.",
-                    (Exception)null,
-                    ErrorLevel.OPTIMIZE
-                    );
-                errors.add( launchError );
-            }
-        }
+    /** Analyse the descriptor <code>content</code>, resolving its codebase
+    against <code>base</code> if not null.
+    @see DescriptorSnapshot#of(byte[], URL) */
+    public AnalysisResult analyze(byte[] content, URL base) throws IOException {
+        return analyze(DescriptorSnapshot.of(content, base));
     }
 
-    public void checkSplashIconHasHref(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        String href = getHref();
-        if (href==null) {
-            LaunchError launchError = new LaunchError(
-                    "Icon  " +
-                    hrefNode.getTextContent() +
-                    " will not appear as a splash unless the JNLP href attribute is specified.",
-                    (Exception)null,
-                    ErrorLevel.WARNING
-            );
-            errors.add( launchError );
-        }
+    /** Analyse the descriptor read from <code>is</code>, which is left open.
+    @see DescriptorSnapshot#of(InputStream, URL) */
+    public AnalysisResult analyze(InputStream is, URL base) throws IOException {
+        return analyze(DescriptorSnapshot.of(is, base));
     }
 
-    public void checkLinkResource(Node resource) {
-        try {
-            // should be 1st check..
-            checkResourceAvailability(resource);
+    /** Analyse the descriptor read from <code>reader</code>, which is left
+    open.
+    @see DescriptorSnapshot#of(Reader, URL) */
+    public AnalysisResult analyze(Reader reader, URL base) throws IOException {
+        return analyze(DescriptorSnapshot.of(reader, base));
+    }
+
+    /** Analyse the descriptor in the file at <code>path</code>.
+    @see DescriptorSnapshot#of(Path, URL) */
+    public AnalysisResult analyze(Path path, URL base) throws IOException {
+        return analyze(DescriptorSnapshot.of(path, base));
+    }
 
-            checkResourceHrefOptimisation(resource);
+    /** The state of one analysis, only ever seen by the stage running. */
+    private class Analysis {
 
-        } catch(IOException ioe) {
-            addResourceFetchError(resource, ioe, true);
-        } catch(Exception e) {
-            addException(e);
+        private final URL page;
+        /** The descriptor as given, or null to fetch it from the page. */
+        private final DescriptorSnapshot given;
+        private final ResourceProber resourceProber;
+        private final ResourceVerifier resourceVerifier;
+        private final HttpCache httpCache;
+        private final boolean offline;
+        private final boolean streaming;
+        private final ElementResults elementResults;
+        private final List<LaunchError> errors = new ArrayList<LaunchError>();
+        private final List<URL> extensions = new ArrayList<URL>();
+        private boolean xmlValid;
+        private DescriptorSnapshot snapshot;
+        private JNLPDescriptor descriptor;
+        private DescriptorDiff diff;
+        private RuleContext context;
+
+        Analysis(URL page, DescriptorSnapshot given, ResourceProber resourceProber,
+                HttpCache httpCache, ElementResults elementResults) {
+            this.page = page;
+            this.given = given;
+            this.resourceProber = resourceProber;
+            this.resourceVerifier = JNLPAnalyser.this.resourceVerifier;
+            this.httpCache = httpCache;
+            this.offline = JNLPAnalyser.this.offline;
+            this.streaming = JNLPAnalyser.this.streaming;
+            this.elementResults = elementResults;
+        }
+
+        void addResourceFetchError(String href, Exception e, boolean error) {
+            ErrorLevel level = (error ? ErrorLevel.ERROR : ErrorLevel.WARNING );
+            errors.add( new LaunchError(
+                "Problem fetching resource " + href
+                + ".  " + e.getMessage(),
+                e, level) );
         }
-    }
-
-    public void addResourceFetchError(Node resource, Exception e, boolean error) {
-        NamedNodeMap attributes = resource.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        addResourceFetchError(hrefNode.getTextContent(), e, error);
-    }
-    
-    public void addResourceFetchError(String href, Exception e, boolean error) {
-        ErrorLevel level = (error ? ErrorLevel.ERROR : ErrorLevel.WARNING );
-        errors.add( new LaunchError(
-            "Problem fetching resource " + href
-            + ".  " + e.getMessage(),
-            e, level) );
-    }
 
-    public void checkResourceHrefOptimisation(Node resource) {
-        NamedNodeMap attributes = resource.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        String href = hrefNode.getTextContent();
-        try {
-            URL fullPath = new URL(getCodeBase(), href);
-            URI codebaseUri = getCodeBase().toURI();
-            URI pathUri = fullPath.toURI();
-            String relative = codebaseUri.relativize(pathUri).toString();
-            if (relative.length()<href.length()) {
-                LaunchError launchError = new LaunchError(
-                    "The HREF of '" +
-                    href +
-                    "' could be optimized to '" +
-                    relative +
-                    "'.",
+        void checkContentType(String type) {
+            if ( type==null || (!type.equals(contentType) && !type.startsWith(contentType + ";"))) {
+                errors.add(
+                    new LaunchError(
+                    "Content type " +
+                    type +
+                    " does not equal expected type of " +
+                    contentType,
                     (Exception)null,
-                    ErrorLevel.OPTIMIZE);
-                errors.add( launchError );
+                    ErrorLevel.WARNING) );
             }
-        } catch(Exception e) {
-            addException(e);
         }
-    }
 
-    public void checkResourceType(Node resource, String[] allowable) {
-        NamedNodeMap attributes = resource.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        String[] parts = hrefNode.getTextContent().split("\\.");
-        int last = parts.length-1;
-        for ( int ii=0; ii<allowable.length; ii++ ) {
-            debug(parts[last] + "==" + allowable[ii]);
-            if (parts[last].equalsIgnoreCase(allowable[ii])) {
-                // type found
-                return;
+        /** Check the well-formedness and the XML validity of the data via XSD,
+        in one parse that also builds the document for the post-validation
+        checks.  Problems of either kind are reported through the
+        ListErrorHandler.
+        @throws SAXParseException if the data is not well-formed, after the
+        problem has been reported. */
+        private void parseAndValidate()
+            throws
+            ParserConfigurationException,
+            SAXException,
+            IOException
+            {
+
+            ListErrorHandler errorHandler = new ListErrorHandler();
+            LocalEntityResolver entityResolver = new LocalEntityResolver();
+            debug("Validating JNLP.");
+
+            String spec;
+            InputStream head = snapshot.openStream();
+            try {
+                spec = SchemaCache.readSpec(head);
             }
-        }
-        StringBuffer types = new StringBuffer();
-        for ( int ii=0; ii<allowable.length; ii++ ) {
-            types.append( allowable[ii] );
-            types.append( ", " );
-        }
-        String allowableTypes = types.toString();
-        allowableTypes = allowableTypes.substring(0,allowableTypes.length()-2);
-        LaunchError launchError = new LaunchError(
-            "Resource type " +
-            parts[last] +
-            " of resource " +
-            hrefNode.getTextContent() +
-            " is not one of the allowable types of " +
-            allowableTypes +
-            ".",
-            (Exception)null,
-            ErrorLevel.ERROR);
-        errors.add(launchError);
-    }
+            finally {
+                head.close();
+            }
+            SchemaCache schemaCache = SchemaCache.forSpec(spec);
+            DocumentBuilder documentBuilder = schemaCache.borrowBuilder();
+            try {
+                documentBuilder.setErrorHandler( errorHandler );
+                documentBuilder.setEntityResolver( entityResolver );
 
-    public void checkResourceAvailability(Node resource) throws IOException {
-        NamedNodeMap attributes = resource.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        URL url = new URL(getCodeBase(), hrefNode.getTextContent() );
-        URLConnection urlc = url.openConnection();
-        urlc.connect();
-    }
-    
-    public void checkPack200Enabled()
-    {
-      NodeList nodeList = getPropertyNodes();
-      boolean pack200Enabled = false;
-
-      for (int ii = 0; ii < nodeList.getLength(); ii++)
-      {
-        Node node = nodeList.item(ii);
-        NamedNodeMap nodeMap = node.getAttributes();
-        Node key = nodeMap.getNamedItem("name");
-        Node value = nodeMap.getNamedItem("value");
-        if (key != null && "jnlp.packEnabled".equals(key.getTextContent()) && value != null)
-          pack200Enabled = "true".equals(value.getTextContent());
-      }
-
-      if (!pack200Enabled) {
-        errors.add(
-            new LaunchError(
-                "Reduce download time by enabling pack200. See http://docs.oracle.com/javase/tutorial/deployment/deploymentInDepth/reducingDownloadTime.html",
-                (Exception)null,
-                ErrorLevel.OPTIMIZE
-                ));
-      }
-    }
+                InputStream is = snapshot.openStream();
+                try {
+                    Document document = documentBuilder.parse( is );
+                    debug("XML is well-formed.");
+                    // one walk of the tree, which is not kept beyond this
+                    descriptor = JNLPDescriptor.read(document);
+                }
+                finally {
+                    is.close();
+                }
+            }
+            finally {
+                schemaCache.release(documentBuilder);
 
-    public void checkResourceSize(Node resourceNode) {
-        NamedNodeMap attributes = resourceNode.getAttributes();
-        Node hrefNode = attributes.getNamedItem("href");
-        try {
-            Node sizeNode = attributes.getNamedItem("size");
-            if (sizeNode==null) {
-                LaunchError launchError = new LaunchError(
-                    "Downloads can be optimized by specifying a resource size for '" +
-                    hrefNode.getTextContent() +
-                    "'.",
-                    (Exception)null,
-                    ErrorLevel.OPTIMIZE);
-                errors.add( launchError );
-            } else {
-                URL url = new URL(getCodeBase(), hrefNode.getTextContent() );
-                URLConnection urlc = url.openConnection();
-                urlc.connect();
-                // check size against declared size
-                int actualSize = urlc.getContentLength();
-                int declaredSize = Integer.parseInt( sizeNode.getTextContent() );
-                if (actualSize!=declaredSize) {
-                    LaunchError launchError = new LaunchError(
-                        "Resource '" +
-                        hrefNode.getTextContent() +
-                        "' declared as size '" +
-                        declaredSize +
-                        "' but is actually '" +
-                        actualSize +
-                        "'.",
-                        (Exception)null,
-                        ErrorLevel.WARNING);
-                    errors.add( launchError );
+                List<LaunchError> parseErrors = errorHandler.getParseErrors();
+                xmlValid = descriptor != null && parseErrors.isEmpty();
+                errors.addAll(parseErrors);
+                addSchemaNote(spec, schemaCache, parseErrors);
+                addBlockedEntities(entityResolver);
+            }
+            debug("END: Validating JNLP.");
+        }
+
+        /** Read the descriptor as a stream, validating it and checking each
+        element with the element rules as soon as it has been read.
+        @throws SAXParseException if the data is not well-formed, after the
+        problem has been reported. */
+        private void stream(List<Rule> rules) throws SAXException, IOException {
+            final List<ElementRule> elementRules = new ArrayList<ElementRule>();
+            for (Rule rule : rules) {
+                if (rule instanceof ElementRule) {
+                    elementRules.add( (ElementRule)rule );
                 }
             }
-        } catch(Exception e) {
-            addException( e );
-        }
-    }
+            ListErrorHandler errorHandler = new ListErrorHandler();
+            LocalEntityResolver entityResolver = new LocalEntityResolver();
+            ElementChecks checks = new ElementChecks(elementRules);
+            boolean read = false;
 
-    public void checkContentType() throws IOException {
-        //URL url = content.getPage();
-        URLConnection urlc = page.openConnection();
-        String type = urlc.getContentType();
-        if ( !type.equals(contentType) && !type.startsWith(contentType + ";")) {
-            errors.add(
-                new LaunchError(
-                "Content type " +
-                type +
-                " does not equal expected type of " +
-                contentType,
-                (Exception)null,
-                ErrorLevel.WARNING) );
+            String host = offline || given!=null ? null : page.getHost();
+            acquire(host);
+            try {
+                InputStream raw;
+                if (given!=null) {
+                    raw = given.openStream();
+                } else {
+                    URLConnection urlc = openConnection();
+                    if (!offline) {
+                        checkContentType(urlc.getContentType());
+                    }
+                    raw = new BufferedInputStream(urlc.getInputStream());
+                }
+                ReplayInputStream ahead = new ReplayInputStream(raw);
+                InputStream is = ahead;
+                try {
+                    // no mark, the prolog before the spec may be of any length
+                    String spec = SchemaCache.readSpec(ahead);
+                    is = ahead.replay();
+                    SchemaCache schemaCache = SchemaCache.forSpec(spec);
+                    Validator validator = schemaCache.borrowValidator();
+                    try {
+                        validator.setErrorHandler( errorHandler );
+                        validator.setResourceResolver( entityResolver );
+                        InputSource source = new InputSource( is );
+                        source.setSystemId( page.toExternalForm() );
+                        // the events pass the validator on to the checks
+                        validator.validate( new SAXSource(source),
+                            new SAXResult(new DescriptorStreamHandler(checks)) );
+                        read = true;
+                    }
+                    finally {
+                        schemaCache.release(validator);
+
+                        List<LaunchError> parseErrors = errorHandler.getParseErrors();
+                        xmlValid = read && parseErrors.isEmpty();
+                        errors.addAll(parseErrors);
+                        addSchemaNote(spec, schemaCache, parseErrors);
+                        addBlockedEntities(entityResolver);
+                        errors.addAll(checks.errors);
+                        if (checks.context!=null) {
+                            extensions.addAll( checks.context.getExtensions() );
+                        }
+                    }
+                }
+                finally {
+                    is.close();
+                }
+            }
+            finally {
+                release(host);
+            }
         }
-    }
 
-    private void addException(Exception e) {
-            errors.add(
-                new LaunchError(
-                e.getMessage(),
-                e,
-                ErrorLevel.ERROR) );
-    }
+        /** If the descriptor is not valid against a schema older than the
+        newest, say which schema was used, since the elements of a later
+        spec are only allowed by a later spec attribute. */
+        private void addSchemaNote(String spec, SchemaCache schemaCache,
+            List<LaunchError> parseErrors) {
 
-    /** Check the well-formedness of the data. */
-    private void checkWellFormedness()
-        throws
-        ParserConfigurationException,
-        SAXException,
-        IOException
-        {
-
-        DocumentBuilderFactory factory =
-            DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-
-        InputStream is = page.openStream();
-        try {
-            documentBuilder.parse( is );
-        }
-        finally {
-            is.close();
+            if (schemaCache.getSchemaName().equals(SchemaCache.JNLP_7_0_SCHEMA)) {
+                return;
+            }
+            for (LaunchError parseError : parseErrors) {
+                if (parseError.getLevel()==ErrorLevel.ERROR) {
+                    errors.add( new LaunchError(
+                        "Validated against " + schemaCache.getSchemaName() +
+                        ", the schema for spec='" +
+                        (spec==null ? SchemaCache.DEFAULT_SPEC : spec) +
+                        "'.  Elements of a later specification need a later spec attribute.",
+                        null,
+                        ErrorLevel.WARNING) );
+                    return;
+                }
+            }
         }
 
-        System.out.println("XML is well-formed.");
-    }
-
-    private void offlineAllowed() {
-        NodeList nodeList = document.getElementsByTagName("offline-allowed");
-        if (nodeList.getLength()==0) {
-            errors.add(
-                new LaunchError(
-                    "Optimize this application for off-line use by adding the <offline-allowed /> flag.",
-                    (Exception)null,
-                    ErrorLevel.OPTIMIZE
-                    ));
+        /** Warn of each external entity the parse was not allowed to
+        fetch. */
+        private void addBlockedEntities(LocalEntityResolver entityResolver) {
+            for (String id : entityResolver.getBlocked()) {
+                errors.add( new LaunchError(
+                    "External entity '" + id + "' was not fetched.  " +
+                    "Only the JNLP DTDs and schemas bundled with JaNeLa are read.",
+                    null,
+                    ErrorLevel.WARNING) );
+            }
         }
-    }
 
-    private void checkDesktopIcon() {
-        NodeList nodeList = document.getElementsByTagName("desktop");
-        if (nodeList.getLength()>0) {
-            errors.add(
-                new LaunchError(
-                    "Desktop icons were subject to bug nnnn in earlier J2SE versions",
-                    (Exception)null,
-                    ErrorLevel.WARNING
-                    ));
-        }
-    }
+        /** Hands each element of a streamed descriptor to the element
+        rules. */
+        private class ElementChecks implements DescriptorStreamHandler.Listener {
 
-    private String getDeclaredEncoding() {
-        debug( "******  documentType: " + document.getDoctype() );
-        debug( "******  documentElement: " + document.getDocumentElement() );
-        return document.getXmlEncoding();
-        
-//        String jnlpContent = content.getText().toLowerCase();
-//        int encodingStart= jnlpContent.indexOf("encoding");
-//        int nextQuoteDelimiter = jnlpContent.indexOf("'", encodingStart);
-//        int nextDoubleQuoteDelimiter = jnlpContent.indexOf("\"", encodingStart);
-//        int delim;
-//        if (nextQuoteDelimiter<0) {
-//            delim = nextDoubleQuoteDelimiter;
-//        } else if(nextDoubleQuoteDelimiter<0) {
-//            delim = nextQuoteDelimiter;
-//        } else {
-//            delim = (
-//                nextQuoteDelimiter<nextDoubleQuoteDelimiter ?
-//                nextQuoteDelimiter :
-//                nextDoubleQuoteDelimiter);
-//        }
-//        int nextQuoteDelimiterSecond = jnlpContent.indexOf("'", delim+1);
-//        int nextDoubleQuoteDelimiterSecond = jnlpContent.indexOf("\"", delim+1);
-//        int end;
-//        if (nextQuoteDelimiterSecond<0) {
-//            end = nextDoubleQuoteDelimiterSecond;
-//        } else if (nextDoubleQuoteDelimiterSecond<0) {
-//            end = nextQuoteDelimiterSecond;
-//        } else {
-//            end = (
-//                nextQuoteDelimiterSecond<nextDoubleQuoteDelimiterSecond ?
-//                nextQuoteDelimiterSecond :
-//                nextDoubleQuoteDelimiterSecond);
-//        }
-//        System.out.println( delim + " " + end );
-//        String encoding = jnlpContent.substring(delim+1, end).trim();
-//
-//        return encoding;
-    }
+            private final List<ElementRule> rules;
+            private final List<LaunchError> errors = new ArrayList<LaunchError>();
+            private ElementContext context;
 
-    private void checkCodebaseAndHrefEqualsLocation() {
-        try {
-            URL url = new URL(getCodeBase(), getHref());
-            if (!url.equals(page)) {
-                errors.add(
-                    new LaunchError(
-                        "Codebase + href '" +
-                        url +
-                        "' is not equal to actual location of '" +
-                        page +
-                        "'.",
-                        (Exception)null,
-                        ErrorLevel.WARNING
-                        ));
+            ElementChecks(List<ElementRule> rules) {
+                this.rules = rules;
             }
-        } catch(MalformedURLException murle) {
-            errors.add(
-                new LaunchError(
-                    "Codebase + href '" +
-                    getCodeBase() +
-                    getHref() +
-                    "' is a malformed URL!",
-                    (Exception)null,
-                    ErrorLevel.ERROR
-                    ));
-        }
-    }
 
-    private void checkCodebasePresent() {
-        String codebase = getCodeBaseString();
-        if (codebase==null) {
-            errors.add(
-                new LaunchError(
-                    "Codebase not specified.  Defaulting to " +
-                    getCodeBase(),
-                    (Exception)null,
-                    ErrorLevel.WARNING
-                    ));
-        } else {
-            debug("Codebase: " + codebase );
-        }
-    }
-
-    private URL getCodeBase() {
-        String codebase = getCodeBaseString();
-        URL url;
-        try {
-            if (codebase==null) {
-                url = new URL(page, ".");
-            } else {
-                url = new URL(codebase);
+            public void descriptor(String spec, String codebase, String href) {
+                context = new ElementContext(page, codebase, href);
             }
-        } catch(MalformedURLException murle) {
-            murle.printStackTrace();
-            errors.add(
-                new LaunchError(
-                    "Codebase '" +
-                    codebase +
-                    "' is a malformed URL!  Defaulting to " +
-                    page,
-                    (Exception)null,
-                    ErrorLevel.ERROR
-                    ));
-            url = page;
-        }
-        return url;
-    }
 
-    private String getCodeBaseString() {
-        Node jnlpNode = document.getDocumentElement();
-        NamedNodeMap namedNodeMap = jnlpNode.getAttributes();
-        Node node = namedNodeMap.getNamedItem("codebase");
-        if (node==null) {
-            return null;
-        } else {
-            debug("Codebase: " + node.getNodeValue());
-            return node.getNodeValue();
-        }
-    }
-
-    private void checkHrefPresent() {
-        String href = getHrefString();
-        if (href==null) {
-            errors.add(
-                new LaunchError(
-                    "href not specified.  Defaulting to document name '" +
-                    page.getFile(),
-                    (Exception)null,
-                    ErrorLevel.WARNING
-                    ));
-        } else {
-            debug("HREF: " + href );
-        }
-    }
-
-    private String getHref() {
-        if ( getHrefString()==null ) {
-            return page.getFile();
-        } else {
-            return getHrefString();
-        }
-    }
-
-    private String getHrefString() {
-        Node jnlpNode = document.getDocumentElement();
-        NamedNodeMap namedNodeMap = jnlpNode.getAttributes();
-        Node node = namedNodeMap.getNamedItem("href");
-        if (node==null) {
-            return null;
-        } else {
-            debug("HREF: " + node.getNodeValue());
-            return node.getNodeValue();
-        }
-    }
+            public void security(Security security) {
+                context.setSecurity(security);
+            }
 
-    private void checkContentEncoding() {
-        URLConnection urlc;
-        try {
-            String declaredEncoding = getDeclaredEncoding();
-            debug("** encoding: " + declaredEncoding);
-
-            urlc = page.openConnection();
-            String encoding = urlc.getContentEncoding();
-            debug("Reported encoding " + encoding);
-            if (encoding==null) {
-              if (declaredEncoding != null)
-                errors.add(
-                    new LaunchError(
-                        "XML encoding not known, but declared as " +
-                        declaredEncoding,
-                        (Exception)null,
-                        ErrorLevel.WARNING
-                        ));
-            } else {
-                if (!encoding.toLowerCase().equals(declaredEncoding)) {
-                    errors.add(
-                        new LaunchError(
-                            "Declared encoding of " +
-                            declaredEncoding +
-                            " does not match actual encoding of " +
-                            encoding,
-                            (Exception)null,
-                            ErrorLevel.WARNING
-                            ));
+            public void resource(Resource resource) {
+                for (ElementRule rule : rules) {
+                    try {
+                        rule.checkResource(context, resource, errors);
+                    } catch(RuntimeException re) {
+                        addRuleFailure(rule, re);
+                    }
                 }
             }
-        } catch(Exception e) {
-            e.printStackTrace();
-            addException(e);
-        }
-    }
-    
-    private NodeList getPropertyNodes()
-    {
-      NodeList nodeList = document.getElementsByTagName("property");
-      for (int ii=0; ii<nodeList.getLength(); ii++) {
-          Node node = nodeList.item(ii);
-          debug(node);
-
-          NamedNodeMap nodeMap = node.getAttributes();
-          for (int jj=0; jj<nodeMap.getLength(); jj++) {
-              debug(nodeMap.item(jj));
-          }
-
-          NodeList children = node.getChildNodes();
-          for (int kk=0; kk<children.getLength(); kk++) {
-              debug(children.item(kk));
-          }
-      }
-      return nodeList;
-    }
 
-    private NodeList getJ2seNodes() {
-        NodeList nodeList = document.getElementsByTagName("resources");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            Node node = nodeList.item(ii);
-            debug(node);
-
-            NamedNodeMap nodeMap = node.getAttributes();
-            for (int jj=0; jj<nodeMap.getLength(); jj++) {
-                debug(nodeMap.item(jj));
+            public void javaRuntime(JavaRuntime runtime) {
+                for (ElementRule rule : rules) {
+                    try {
+                        rule.checkJavaRuntime(context, runtime, errors);
+                    } catch(RuntimeException re) {
+                        addRuleFailure(rule, re);
+                    }
+                }
             }
 
-            NodeList children = node.getChildNodes();
-            for (int kk=0; kk<children.getLength(); kk++) {
-                debug(children.item(kk));
+            private void addRuleFailure(ElementRule rule, RuntimeException re) {
+                errors.add( new LaunchError(
+                    "Rule " + rule + " failed: " + re,
+                    re, ErrorLevel.ERROR) );
             }
         }
-        return nodeList;
-    }
 
-    /** Check the XML validity of the data via XSD. */
-    private void validateContent() {
-        errorHandler = new ListErrorHandler();
-        System.out.println("Validating JNLP.");
-
-        try {
-            URL schemaSource = Thread.currentThread().getContextClassLoader().getResource("JNLP-6.0.xsd");
-            System.out.println( "schemaSource: " + schemaSource );
-
-            DocumentBuilderFactory factory =
-                DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://xml.org/sax/features/validation", true);
-            factory.setFeature("http://apache.org/xml/features/validation/schema", true) ;
-            factory.setFeature("http://xml.org/sax/features/namespaces", true) ;
-            factory.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
-            factory.setAttribute(
-                "http://apache.org/xml/properties/schema/external-noNamespaceSchemaLocation",
-                schemaSource.toString());
-            factory.setNamespaceAware(true);
-            factory.setValidating(true);
-            
-            InputStream schemaStream = schemaSource.openStream();
-            try {
-                StreamSource ss = new StreamSource( schemaStream );
-                String language = XMLConstants.W3C_XML_SCHEMA_NS_URI;
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(language);
+        CompletableFuture<AnalysisResult> start(Executor executor) {
+            // the configuration as it is now, for all stages
+            final List<Rule> rules = JNLPAnalyser.this.rules;
+            final RuleExecutor ruleExecutor = JNLPAnalyser.this.ruleExecutor;
+            return CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+                    public Boolean get() {
+                        return prepare(rules);
+                    }
+                }, executor)
+                .thenCompose(new Function<Boolean, CompletableFuture<List<LaunchError>>>() {
+                    public CompletableFuture<List<LaunchError>> apply(Boolean prepared) {
+                        if (!prepared) {
+                            return CompletableFuture.completedFuture(
+                                Collections.<LaunchError>emptyList());
+                        }
+                        // post validation checks, side by side
+                        debug("Running post-validation.");
+                        return ruleExecutor.runAsync(rules, context);
+                    }
+                })
+                .thenApply(new Function<List<LaunchError>, AnalysisResult>() {
+                    public AnalysisResult apply(List<LaunchError> ruleErrors) {
+                        errors.addAll( ruleErrors );
+                        if (context!=null) {
+                            extensions.addAll( context.getExtensions() );
+                            debug("END: Running post-validation.");
+                        }
+                        return new AnalysisResult(page, snapshot, descriptor,
+                            diff, xmlValid, errors, extensions);
+                    }
+                });
+        }
 
-                Schema schema = schemaFactory.newSchema(ss);
-                factory.setSchema( schema );
+        /** Fetch the descriptor, within the per-host limit of the
+        verifier. */
+        private DescriptorSnapshot fetch() throws IOException {
+            if (offline) {
+                checkLocal();
+                return DescriptorSnapshot.fetch(page);
             }
-            finally {
-                schemaStream.close();
-            }
-            
-            DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            documentBuilder.setErrorHandler( errorHandler );
-
-            InputStream is = page.openStream();
+            String host = page.getHost();
+            acquire(host);
             try {
-                document = documentBuilder.parse( is );
+                return DescriptorSnapshot.fetch(page, httpCache);
             }
             finally {
-                is.close();
+                release(host);
             }
-
-            List<LaunchError> parseErrors = errorHandler.getParseErrors();
-            xmlValid = parseErrors.isEmpty();
-            errors.addAll(parseErrors);
-        } catch(Exception e) {
-            System.err.println( "Error: " + e.getMessage() );
-            // TODO Show to user
-        }
-        System.out.println("END: Validating JNLP.");
-    }
-
-    public void analyze() {
-        errors.clear();
-        extensions.clear();
-        xmlValid = false;
-        
-        try {
-            checkContentType();
-            checkWellFormedness();
-            
-            
-            validateContent();
-            System.out.println("Running post-validation.");
-
-            // post validation checks
-            checkContentEncoding();
-            checkCodebasePresent();
-            checkCodebaseAndHrefEqualsLocation();
-
-            checkDesktopIcon();
-            offlineAllowed();
-            
-            checkPack200Enabled();
-
-            checkDescriptionLengths();
-
-            checkResource();
-
-            checkJ2seNodes();
-
-            //getJ2seNodes();
-            
-            System.out.println("END: Running post-validation.");
-        }
-        catch (IOException e) {
-            addResourceFetchError(page.toExternalForm(), e, true);
-        }
-        catch (ParserConfigurationException e) {
-            errors.add( new LaunchError(
-                    e.getMessage(), e,
-                    ErrorLevel.FATAL) );
         }
-        catch (SAXException e) {
-            errors.add( new LaunchError(
-                    e.getMessage(), e,
-                    ErrorLevel.ERROR) );
-        }
-    }
 
-    private void checkJ2seNodes() {
-        NodeList nodeList = document.getElementsByTagName("java");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkJ2seForMaxHeapSize(nodeList.item(ii));
-            checkJ2seForSpecificVersion(nodeList.item(ii));
-            checkJ2seForAllowedJavaVmArguments(nodeList.item(ii));
-        }
-        nodeList = document.getElementsByTagName("j2se");
-        for (int ii=0; ii<nodeList.getLength(); ii++) {
-            checkJ2seForMaxHeapSize(nodeList.item(ii));
-            checkJ2seForSpecificVersion(nodeList.item(ii));
-            checkJ2seForAllowedJavaVmArguments(nodeList.item(ii));
-        }
-    }
-    
-    private void checkJ2seForAllowedJavaVmArguments(Node node){
-      NamedNodeMap attributes = node.getAttributes();
-      Node javaVmArgsNode = attributes.getNamedItem("java-vm-args");
-      if (javaVmArgsNode != null)
-      {
-        String javaVmArgsString = javaVmArgsNode.getTextContent().trim();
-        for (String argument : javaVmArgsString.split("\\s"))
-        {
-          boolean isAllowedArgument = false;
-          for (String allowedArgument : new String[]{
-              "-d32",                                                          /* use a 32-bit data model if available (unix platforms only) */
-              "-client",                                                       /* to select the client VM */
-              "-server",                                                       /* to select the server VM */
-              "-verbose",                                                      /* enable verbose output */
-              "-version",                                                      /* print product version and exit */
-              "-showversion",                                                  /* print product version and continue */                                              
-              "-help",                                                         /* print this help message */
-              "-X",                                                            /* print help on non-standard options */
-              "-ea",                                                           /* enable assertions */
-              "-enableassertions",                                             /* enable assertions */
-              "-da",                                                           /* disable assertions */
-              "-disableassertions",                                            /* disable assertions */
-              "-esa",                                                          /* enable system assertions */
-              "-enablesystemassertions",                                       /* enable system assertions */
-              "-dsa",                                                          /* disable system assertione */
-              "-disablesystemassertions",                                      /* disable system assertione */
-              "-Xmixed",                                                       /* mixed mode execution (default) */
-              "-Xint",                                                         /* interpreted mode execution only */
-              "-Xnoclassgc",                                                   /* disable class garbage collection */
-              "-Xincgc",                                                       /* enable incremental garbage collection */
-              "-Xbatch",                                                       /* disable background compilation */
-              "-Xprof",                                                        /* output cpu profiling data */
-              "-Xdebug",                                                       /* enable remote debugging */
-              "-Xfuture",                                                      /* enable strictest checks, anticipating future default */
-              "-Xrs",                                                          /* reduce use of OS signals by Java/VM (see documentation) */
-              "-XX:+ForceTimeHighResolution",                                  /* use high resolution timer */
-              "-XX:-ForceTimeHighResolution"                                  /* use low resolution (default) */
-          })
-          {
-            if (argument.equals(allowedArgument))
-              isAllowedArgument = true;
-          }
-          
-          for (String allowedArgument : new String[]{
-              "-ea",                          /* enable assertions for classes */
-              "-enableassertions",            /* enable assertions for classes */
-              "-da",                          /* disable assertions for classes */
-              "-disableassertions",           /* disable assertions for classes */
-              "-verbose",                     /* enable verbose output */
-              "-Xms",                         /* set initial Java heap size */
-              "-Xmx",                         /* set maximum Java heap size */
-              "-Xss",                         /* set java thread stack size */
-              "-XX:NewRatio",                 /* set Ratio of new/old gen sizes */
-              "-XX:NewSize",                  /* set initial size of new generation */
-              "-XX:MaxNewSize",               /* set max size of new generation */
-              "-XX:PermSize",                 /* set initial size of permanent gen */
-              "-XX:MaxPermSize",              /* set max size of permanent gen */
-              "-XX:MaxHeapFreeRatio",         /* heap free percentage (default 70) */
-              "-XX:MinHeapFreeRatio",         /* heap free percentage (default 40) */
-              "-XX:UseSerialGC",              /* use serial garbage collection */
-              "-XX:ThreadStackSize",          /* thread stack size (in KB) */
-              "-XX:MaxInlineSize",            /* set max num of bytecodes to inline */
-              "-XX:ReservedCodeCacheSize",    /* Reserved code cache size (bytes) */
-              "-XX:MaxDirectMemorySize"
-          })
-          {
-            if (argument.startsWith(allowedArgument))
-              isAllowedArgument = true;
-          }
-          if (!isAllowedArgument)
-            errors.add(new LaunchError(argument + " is not allowed as java-vm-rg", null, ErrorLevel.WARNING));
+        /** @return a connection to the descriptor, which must be local
+        when working offline. */
+        private URLConnection openConnection() throws IOException {
+            if (offline) {
+                checkLocal();
+            }
+            return page.openConnection();
         }
-      }
-    }
 
-    private void checkJ2seForSpecificVersion(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node versionNode = attributes.getNamedItem("version");
-        if (versionNode!=null) {
-            String versionString = versionNode.getTextContent();
-            if (versionString.endsWith("*")) {
-                errors.add(
-                    new LaunchError(
-                        "Note that a java/j2se version of 'n.n*' will limit the app. to that " +
-                        " specific Java runtime, and no later.  It is often better to specify " +
-                        " version as 'n.n+'.",
-                        (Exception)null,
-                        ErrorLevel.OPTIMIZE
-                        ));
+        private void checkLocal() throws IOException {
+            if (!"file".equals(page.getProtocol()) && !"jar".equals(page.getProtocol())) {
+                throw new IOException("Not fetched, working offline.");
             }
         }
-    }
 
-    private void checkJ2seForMaxHeapSize(Node node) {
-        NamedNodeMap attributes = node.getAttributes();
-        Node maxHeapSizeNode = attributes.getNamedItem("max-heap-size");
-        if (maxHeapSizeNode!=null) {
-            String maxHeap = maxHeapSizeNode.getTextContent().toLowerCase();
-            int multiplier = 1;
-            if (maxHeap.endsWith("k")) {
-                maxHeap = maxHeap.substring(0,maxHeap.length()-1);
-                multiplier = 1000;
-            } else if (maxHeap.endsWith("m")) {
-                maxHeap = maxHeap.substring(0,maxHeap.length()-1);
-                multiplier = 1000000;
+        /** Wait for a permit of the verifier to talk to <code>host</code>,
+        if it is not null or empty. */
+        private void acquire(String host) throws IOException {
+            if (host==null || host.length()==0) {
+                return;
             }
-            int maxHeapSize = Integer.parseInt(maxHeap)*multiplier;
-            if (maxHeapSize>1000000000) {
-                errors.add(
-                    new LaunchError(
-                        "Some JWS launches have trouble with a max-heap-size>1000Meg." +
-                        "  A java/j2se element was defined, calling for " +
-                        maxHeapSizeNode.getTextContent() +
-                        " bytes of memory.",
-                        (Exception)null,
-                        ErrorLevel.WARNING
-                        ));
+            try {
+                resourceVerifier.acquire(host);
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                IOException ioe = new IOException("Interrupted while waiting for " + host);
+                ioe.initCause(ie);
+                throw ioe;
             }
         }
-    }
-
-    private void checkDescriptionLengths() {
-        debug("tooltip: " + getDescription("tooltip"));
-        debug("short: " + getDescription("short"));
-        debug("one-line: " + getDescription("one-line"));
-        debug("default-description: " + getDefaultDescription());
-
-        ArrayList<String> desc = new ArrayList<String>();
-        boolean defaultDesc = getDefaultDescription() != null;
-        String type;
-        type = "tooltip";
-        if ( getDescription(type)!=null ) {
-            desc.add( type );
-        }
-        type = "short";
-        if ( getDescription(type)!=null ) {
-            desc.add( type );
-        }
-        type = "one-line";
-        if ( getDescription(type)!=null ) {
-            desc.add( type );
-        }
 
-        // check the short description, against the one-line or default.
-        if ( getDescription("short")!=null ) {
-            if ( getDescription("one-line")!=null ) {
-                checkOneDescriptionAgainstAnother("short", "one-line");
-            } else if ( defaultDesc ) {
-                checkOneDescriptionAgainstAnother("short", null);
+        private void release(String host) {
+            if (host!=null && host.length()>0) {
+                resourceVerifier.release(host);
             }
         }
 
-        if ( getDescription("tooltip")!=null ) {
-            if ( getDescription("short")!=null ) {
-                checkOneDescriptionAgainstAnother("tooltip", "short");
-            } else if ( getDescription("one-line")!=null ) {
-                checkOneDescriptionAgainstAnother("tooltip", "one-line");
-            } else if ( defaultDesc ) {
-                checkOneDescriptionAgainstAnother("tooltip", null);
-            }
-        }
-    }
+        /** Fetch and parse the descriptor, or stream it past the element
+        rules.
+        @return true if the rules can be run against it. */
+        private boolean prepare(List<Rule> rules) {
+            try {
+                if (streaming) {
+                    stream(rules);
+                    return false;
+                }
 
-    private void checkOneDescriptionAgainstAnother(
-        String smaller,
-        String larger) {
-
-        String shortDesc = getDescription(smaller);
-        String longDesc = null;
-        if ( larger==null ) {
-            longDesc = getDefaultDescription();
-            larger = "default";
-        } else {
-            longDesc = getDescription(larger);
-        }
-        if (!(longDesc.length()>=shortDesc.length())) {
-            LaunchError launchError = new LaunchError(
-                "'" +
-                smaller +
-                "' description is longer than '" +
-                larger +
-                "' description.",
-                (Exception)null,
-                ErrorLevel.WARNING);
-            errors.add(launchError);
-        }
-    }
+                if (given!=null) {
+                    snapshot = given;
+                } else {
+                    // the one and only fetch of the descriptor itself
+                    snapshot = fetch();
 
-    private NodeList getDescriptionNodes() {
-        return document.getElementsByTagName("description");
-    }
+                    if (!offline) {
+                        checkContentType(snapshot.getContentType());
+                    }
+                }
+
+                parseAndValidate();
 
-    private String getDescription(String kind) {
-        NodeList descriptions = getDescriptionNodes();
-        for (int ii=0; ii<descriptions.getLength(); ii++) {
-            Node description = descriptions.item(ii);
-            NamedNodeMap attributes = description.getAttributes();
-            Node type = attributes.getNamedItem("kind");
-            if (type!=null) {
-                String value = type.getTextContent();
-                if (value.equalsIgnoreCase(kind)) {
-                    return description.getTextContent().trim();
+                if (elementResults!=null) {
+                    diff = elementResults.update(descriptor);
                 }
+                context = new RuleContext(page, snapshot, descriptor,
+                    resourceProber, resourceVerifier, httpCache, offline,
+                    elementResults);
+                return true;
             }
-        }
-        return null;
-    }
-
-    private String getDefaultDescription() {
-        NodeList descriptions = getDescriptionNodes();
-        for (int ii=0; ii<descriptions.getLength(); ii++) {
-            Node description = descriptions.item(ii);
-            NamedNodeMap attributes = description.getAttributes();
-            Node type = attributes.getNamedItem("kind");
-            if (type==null) {
-                return description.getTextContent().trim();
+            catch (IOException e) {
+                addResourceFetchError(page.toExternalForm(), e, true);
+            }
+            catch (ParserConfigurationException e) {
+                errors.add( new LaunchError(
+                        e.getMessage(), e,
+                        ErrorLevel.FATAL) );
+            }
+            catch (SAXParseException e) {
+                // not well-formed, already reported by the error handler
+            }
+            catch (SAXException e) {
+                errors.add( new LaunchError(
+                        e.getMessage(), e,
+                        ErrorLevel.ERROR) );
             }
+            return false;
         }
-        return null;
     }
 
     private static class ListErrorHandler extends DefaultHandler {
@@ -25,6 +25,7 @@ import java.util.List;
 
 import javax.swing.Action;
 import javax.swing.JFrame;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
@@ -96,6 +97,9 @@ public class JaNeLA extends JPanel {
             if(action == null) {
                 menu.addSeparator();
             }
+            else if(action.getValue(Action.SELECTED_KEY) != null) {
+                menu.add(new JCheckBoxMenuItem(action));
+            }
             else {
                 menu.add(action);
             }
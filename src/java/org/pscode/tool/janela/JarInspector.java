@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/** Lists the entries of a jar while reading as little of it as possible.
+<p>
+Over HTTP the end of central directory record and the central directory
+itself are fetched with Range requests, which costs a few kilobytes
+however large the jar is.  file: URLs are read with random access.  A
+server that ignores ranges, or any other kind of URL, gets the whole jar
+streamed through a ZipInputStream. */
+public class JarInspector {
+
+    private static final int END_OF_CENTRAL_DIR = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int CENTRAL_DIR_ENTRY = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIR_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_SIZE = 56;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    /** The first guess at how much of the tail holds the directories. */
+    private static final int TAIL_GUESS = 16 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset CP437 = getCp437();
+
+    /** @return the names of all entries of the jar at <code>url</code>. */
+    public List<String> listEntries(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return listFileEntries(new File(url.toURI()));
+            } catch(URISyntaxException use) {
+                // not a plain file path after all, read it as a stream
+            } catch(IllegalArgumentException iae) {
+                // as above
+            }
+        }
+        URLConnection urlc = url.openConnection();
+        if (urlc instanceof HttpURLConnection) {
+            return listHttpEntries(url, (HttpURLConnection)urlc);
+        }
+        return listStreamEntries(urlc.getInputStream());
+    }
+
+    private List<String> listFileEntries(File file) throws IOException {
+        List<String> names = new ArrayList<String>();
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+        return names;
+    }
+
+    private List<String> listStreamEntries(InputStream is) throws IOException {
+        List<String> names = new ArrayList<String>();
+        ZipInputStream zis = new ZipInputStream(is);
+        try {
+            ZipEntry ze;
+            while ((ze = zis.getNextEntry()) !=null) {
+                names.add(ze.getName());
+            }
+        }
+        finally {
+            zis.close();
+        }
+        return names;
+    }
+
+    private List<String> listHttpEntries(URL url, HttpURLConnection http)
+        throws IOException {
+
+        http.setRequestProperty("Range", "bytes=-" + TAIL_GUESS);
+        http.setRequestProperty("Accept-Encoding", "identity");
+        RangeResponse tail = readRange(http);
+        if (tail==null) {
+            if (http.getResponseCode()==HttpURLConnection.HTTP_OK) {
+                // the range was ignored and the whole jar is on its way
+                return listStreamEntries(http.getInputStream());
+            }
+            return streamWhole(url);
+        }
+
+        int eocd = findEndOfCentralDir(tail.data);
+        if (eocd<0 && tail.start>0) {
+            tail = fetchRange(url, Math.max(0,
+                tail.total - END_OF_CENTRAL_DIR_SIZE - MAX_COMMENT), tail.total - 1);
+            eocd = tail == null ? -1 : findEndOfCentralDir(tail.data);
+        }
+        if (eocd<0) {
+            return streamWhole(url);
+        }
+
+        long entryCount = readShort(tail.data, eocd + 10);
+        long dirSize = readInt(tail.data, eocd + 12);
+        long dirOffset = readInt(tail.data, eocd + 16);
+        if (dirOffset==0xFFFFFFFFL || dirSize==0xFFFFFFFFL || entryCount==0xFFFF) {
+            int locator = eocd - ZIP64_LOCATOR_SIZE;
+            if (locator<0 || readInt(tail.data, locator)!=ZIP64_LOCATOR) {
+                return streamWhole(url);
+            }
+            long zip64Offset = readLong(tail.data, locator + 8);
+            byte[] zip64 = getRange(url, tail, zip64Offset,
+                zip64Offset + ZIP64_END_OF_CENTRAL_DIR_SIZE - 1);
+            if (zip64==null || readInt(zip64, 0)!=ZIP64_END_OF_CENTRAL_DIR) {
+                return streamWhole(url);
+            }
+            dirSize = readLong(zip64, 40);
+            dirOffset = readLong(zip64, 48);
+        }
+        if (dirSize==0) {
+            return new ArrayList<String>();
+        }
+        if (dirSize>Integer.MAX_VALUE) {
+            return streamWhole(url);
+        }
+
+        byte[] dir = getRange(url, tail, dirOffset, dirOffset + dirSize - 1);
+        List<String> names = dir == null ? null : parseCentralDir(dir);
+        return names == null ? streamWhole(url) : names;
+    }
+
+    /** @return the bytes from <code>from</code> to <code>to</code>, taken
+    from the tail if it already holds them. */
+    private byte[] getRange(URL url, RangeResponse tail, long from, long to)
+        throws IOException {
+
+        if (from<0 || to<from || to>=tail.total) {
+            return null;
+        }
+        if (from>=tail.start) {
+            byte[] part = new byte[(int)(to - from + 1)];
+            System.arraycopy(tail.data, (int)(from - tail.start), part, 0, part.length);
+            return part;
+        }
+        RangeResponse range = fetchRange(url, from, to);
+        return range == null ? null : range.data;
+    }
+
+    private RangeResponse fetchRange(URL url, long from, long to) throws IOException {
+        HttpURLConnection http = (HttpURLConnection)url.openConnection();
+        http.setRequestProperty("Range", "bytes=" + from + "-" + to);
+        http.setRequestProperty("Accept-Encoding", "identity");
+        RangeResponse range = readRange(http);
+        if (range==null) {
+            http.disconnect();
+        }
+        return range;
+    }
+
+    /** @return the partial content, or null if the server sent something
+    else, in which case the response is still unread. */
+    private RangeResponse readRange(HttpURLConnection http) throws IOException {
+        int status = http.getResponseCode();
+        if (status==416) {
+            // nothing to take a range of, e.g. an empty file
+            http.disconnect();
+            return null;
+        }
+        if (status!=HttpURLConnection.HTTP_PARTIAL) {
+            if (status>=400) {
+                throw new IOException("Server returned HTTP " + status
+                    + " for " + http.getURL());
+            }
+            return null;
+        }
+        // Content-Range: bytes start-end/total
+        String contentRange = http.getHeaderField("Content-Range");
+        long start;
+        long total;
+        try {
+            String spec = contentRange.substring(contentRange.indexOf(' ') + 1);
+            start = Long.parseLong(spec.substring(0, spec.indexOf('-')));
+            total = Long.parseLong(spec.substring(spec.indexOf('/') + 1));
+        } catch(RuntimeException re) {
+            http.disconnect();
+            return null;
+        }
+        InputStream is = http.getInputStream();
+        try {
+            return new RangeResponse(DescriptorSnapshot.readFully(is), start, total);
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    private List<String> streamWhole(URL url) throws IOException {
+        HttpURLConnection http = (HttpURLConnection)url.openConnection();
+        return listStreamEntries(http.getInputStream());
+    }
+
+    private static int findEndOfCentralDir(byte[] data) {
+        for (int ii=data.length - END_OF_CENTRAL_DIR_SIZE; ii>=0; ii--) {
+            if (readInt(data, ii)==END_OF_CENTRAL_DIR) {
+                int commentLength = readShort(data, ii + 20);
+                if (ii + END_OF_CENTRAL_DIR_SIZE + commentLength==data.length) {
+                    return ii;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** @return the entry names, or null if the directory is not where the
+    end record said it would be (e.g. a self-extracting archive). */
+    private static List<String> parseCentralDir(byte[] dir) {
+        List<String> names = new ArrayList<String>();
+        int pos = 0;
+        while (pos + 46<=dir.length) {
+            if (readInt(dir, pos)!=CENTRAL_DIR_ENTRY) {
+                return null;
+            }
+            int flags = readShort(dir, pos + 8);
+            int nameLength = readShort(dir, pos + 28);
+            int extraLength = readShort(dir, pos + 30);
+            int commentLength = readShort(dir, pos + 32);
+            if (pos + 46 + nameLength>dir.length) {
+                return null;
+            }
+            Charset charset = (flags & 0x800)!=0 ? UTF8 : CP437;
+            names.add(new String(dir, pos + 46, nameLength, charset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return names;
+    }
+
+    private static int readShort(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    private static long readInt(byte[] b, int off) {
+        return (readShort(b, off) | ((long)readShort(b, off + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return readInt(b, off) | (readInt(b, off + 4) << 32);
+    }
+
+    private static Charset getCp437() {
+        try {
+            return Charset.forName("IBM437");
+        } catch(Exception e) {
+            return Charset.forName("ISO-8859-1");
+        }
+    }
+
+    private static class RangeResponse {
+        final byte[] data;
+        final long start;
+        final long total;
+
+        RangeResponse(byte[] data, long start, long total) {
+            this.data = data;
+            this.start = start;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.IOException;
+
+/** The main class of the jar.  With arguments it hands them to the
+{@link BatchAnalyser}, otherwise it opens the GUI of {@link JaNeLA}.
+Having no Swing supertype, it lets a batch run start without loading
+AWT or Swing. */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length>0) {
+            // descriptors to check, no GUI wanted
+            BatchAnalyser.main(args);
+        } else {
+            JaNeLA.main(args);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/** Resolves the external entities of a descriptor without the network.
+<p>
+The public identifiers of Sun's JNLP DTDs, and any system identifier
+naming one of the DTDs or schemas bundled with JaNeLa, are read from the
+bundled copy.  Every other external entity or DTD is read as empty, and
+its identifier is kept so the analysis can report it.  A descriptor can
+then neither make the parser wait on a server nor read local files
+through an entity.  Document builders ask it as an EntityResolver, and
+validators as an LSResourceResolver.  One resolver serves one parse. */
+public final class LocalEntityResolver
+    implements EntityResolver, LSResourceResolver {
+
+    /** The bundled DTD, read for the JNLP DTDs of every spec. */
+    public static final String JNLP_DTD = "JNLP-6.0.dtd";
+
+    /** Public identifiers to the name of the bundled copy. */
+    private static final Map<String, String> PUBLIC_IDS = new HashMap<String, String>();
+    /** The last part of system identifiers, in lower case, to the name of
+    the bundled copy. */
+    private static final Map<String, String> FILE_NAMES = new HashMap<String, String>();
+
+    static {
+        for (String version : new String[] {"1.0", "1.5", "6.0", "7.0"}) {
+            // Sun's DTDs were published with both spellings
+            PUBLIC_IDS.put("-//Sun Microsystems, Inc//DTD JNLP Descriptor " +
+                version + "//EN", JNLP_DTD);
+            PUBLIC_IDS.put("-//Sun Microsystems, Inc//DTD JNLP Discriptor " +
+                version + "//EN", JNLP_DTD);
+            FILE_NAMES.put("jnlp-" + version + ".dtd", JNLP_DTD);
+        }
+        for (String schema : new String[] {SchemaCache.JNLP_1_0_SCHEMA,
+                SchemaCache.JNLP_SCHEMA, SchemaCache.JNLP_7_0_SCHEMA}) {
+            FILE_NAMES.put(schema.toLowerCase(Locale.ENGLISH), schema);
+        }
+    }
+
+    private final List<String> blocked = new ArrayList<String>();
+
+    public InputSource resolveEntity(String publicId, String systemId)
+        throws IOException {
+
+        URL url = getBundledCopy(publicId, systemId);
+        if (url!=null) {
+            InputSource source = new InputSource( url.openStream() );
+            source.setPublicId( publicId );
+            source.setSystemId( url.toExternalForm() );
+            return source;
+        }
+        blocked.add( systemId==null ? publicId : systemId );
+        InputSource empty = new InputSource( new StringReader("") );
+        empty.setPublicId( publicId );
+        empty.setSystemId( systemId );
+        return empty;
+    }
+
+    public LSInput resolveResource(String type, String namespaceURI,
+        String publicId, String systemId, String baseURI) {
+
+        try {
+            return new SourceInput( resolveEntity(publicId, systemId), baseURI );
+        } catch(IOException ioe) {
+            throw new IllegalStateException(
+                "Can not read the bundled copy of " + systemId, ioe);
+        }
+    }
+
+    /** @return the URL of the bundled copy of the entity, or null if
+    there is none. */
+    public static URL getBundledCopy(String publicId, String systemId) {
+        String name = publicId == null ? null : PUBLIC_IDS.get(publicId.trim());
+        if (name==null && systemId!=null) {
+            String file = systemId.substring(systemId.lastIndexOf('/') + 1);
+            name = FILE_NAMES.get(file.toLowerCase(Locale.ENGLISH));
+        }
+        if (name==null) {
+            return null;
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        URL url = loader == null ? null : loader.getResource(name);
+        if (url==null) {
+            url = LocalEntityResolver.class.getClassLoader().getResource(name);
+        }
+        return url;
+    }
+
+    /** @return the identifiers of the entities read as empty, in the
+    order they were asked for. */
+    public List<String> getBlocked() {
+        return Collections.unmodifiableList(blocked);
+    }
+
+    /** An InputSource seen as an LSInput. */
+    private static class SourceInput implements LSInput {
+
+        private final InputSource source;
+        private String baseURI;
+        private String stringData;
+        private boolean certifiedText;
+
+        SourceInput(InputSource source, String baseURI) {
+            this.source = source;
+            this.baseURI = baseURI;
+        }
+
+        public Reader getCharacterStream() {
+            return source.getCharacterStream();
+        }
+
+        public void setCharacterStream(Reader characterStream) {
+            source.setCharacterStream(characterStream);
+        }
+
+        public InputStream getByteStream() {
+            return source.getByteStream();
+        }
+
+        public void setByteStream(InputStream byteStream) {
+            source.setByteStream(byteStream);
+        }
+
+        public String getStringData() {
+            return stringData;
+        }
+
+        public void setStringData(String stringData) {
+            this.stringData = stringData;
+        }
+
+        public String getSystemId() {
+            return source.getSystemId();
+        }
+
+        public void setSystemId(String systemId) {
+            source.setSystemId(systemId);
+        }
+
+        public String getPublicId() {
+            return source.getPublicId();
+        }
+
+        public void setPublicId(String publicId) {
+            source.setPublicId(publicId);
+        }
+
+        public String getBaseURI() {
+            return baseURI;
+        }
+
+        public void setBaseURI(String baseURI) {
+            this.baseURI = baseURI;
+        }
+
+        public String getEncoding() {
+            return source.getEncoding();
+        }
+
+        public void setEncoding(String encoding) {
+            source.setEncoding(encoding);
+        }
+
+        public boolean getCertifiedText() {
+            return certifiedText;
+        }
+
+        public void setCertifiedText(boolean certifiedText) {
+            this.certifiedText = certifiedText;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** Makes the executors that wait on the network: resource checks,
+descriptor fetches and network rules.
+<p>
+On Java 21 and later every task gets a virtual thread of its own, so
+thousands of connections can be open at once for the price of a few
+carrier threads.  The per-host limit of the {@link ResourceVerifier}
+still decides how many of them talk to one server.  On older JVMs, or
+with <code>-Djanela.threads=platform</code>, a pool of daemon platform
+threads is used instead.  The virtual thread API is reached through
+reflection, so this class still loads on the older JVMs. */
+public final class NetworkExecutors {
+
+    /** The system property choosing the kind of threads. */
+    public static final String MODE_PROPERTY = "janela.threads";
+
+    private static final boolean VIRTUAL = !"platform".equals(
+        System.getProperty(MODE_PROPERTY)) && newVirtualThreadFactory("janela-probe-") != null;
+
+    private NetworkExecutors() {
+    }
+
+    /** @return true if the executors made here use virtual threads. */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /** @return an executor running each task on a virtual thread named
+    <code>prefix</code> and a number, or without virtual threads a pool of
+    <code>threads</code> daemon threads, or as many as needed if
+    <code>threads</code> is 0. */
+    public static ExecutorService newExecutor(String prefix, int threads) {
+        if (VIRTUAL) {
+            ExecutorService executor = newVirtualThreadExecutor(prefix);
+            if (executor!=null) {
+                return executor;
+            }
+        }
+        ThreadFactory factory = new ResourceVerifier.DaemonThreadFactory(prefix);
+        return threads > 0
+            ? Executors.newFixedThreadPool(threads, factory)
+            : Executors.newCachedThreadPool(factory);
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String prefix) {
+        ThreadFactory factory = newVirtualThreadFactory(prefix);
+        if (factory==null) {
+            return null;
+        }
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor",
+                ThreadFactory.class);
+            return (ExecutorService)method.invoke(null, factory);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    /** @return Thread.ofVirtual().name(prefix, 1).factory(), or null if
+    this JVM has no virtual threads. */
+    private static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(builder, prefix, 1L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch(Exception e) {
+            // before Java 21, or a preview that is not enabled
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/** Keeps the bytes read through it, so they can be read again ahead of
+the rest of the stream.  Unlike mark and reset there is no limit on how
+far ahead it is read, so the root element of a descriptor can be looked
+at however long the prolog before it. */
+class ReplayInputStream extends FilterInputStream {
+
+    private final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+    ReplayInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b>=0) {
+            recorded.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read>0) {
+            recorded.write(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes must be recorded too
+        byte[] b = new byte[(int)Math.min(n, 8192)];
+        int read = read(b, 0, b.length);
+        return read < 0 ? 0 : read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /** @return a stream over the bytes read so far, then the rest.  This
+    stream is not read from again. */
+    InputStream replay() {
+        return new SequenceInputStream(
+            new ByteArrayInputStream(recorded.toByteArray()), in);
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/** Measures a resource by reading its body once, for the servers that do
+not say how long it is: chunked responses, and those compressed on the
+fly.
+<p>
+The body is asked for as a launcher would, accepting gzip, and counted
+block by block as it streams in, both as it came over the wire and as
+decoded.  Nothing is kept but the first bytes, which tell what the
+content really is, so a resource of any size is measured in the memory
+of one block. */
+public class ResourceMeter {
+
+    /** The size of each read. */
+    static final int BLOCK = 8192;
+
+    /** How many bytes are kept to tell the kind of content. */
+    private static final int HEAD = 16;
+
+    private static final int PNG_SIGNATURE = 0x89504E47;
+
+    /** What the first bytes of a resource say it is. */
+    public enum Kind {
+        ZIP, XML, GIF, JPEG, PNG, UNKNOWN;
+    }
+
+    /** The sizes and kind of one resource. */
+    public static class Measurement {
+        private final long wireBytes;
+        private final long decodedBytes;
+        private final Kind kind;
+
+        public Measurement(long wireBytes, long decodedBytes, Kind kind) {
+            this.wireBytes = wireBytes;
+            this.decodedBytes = decodedBytes;
+            this.kind = kind;
+        }
+
+        /** @return the bytes of the body as sent, after any chunking is
+        undone but before any content encoding is. */
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        /** @return the bytes of the resource itself. */
+        public long getDecodedBytes() {
+            return decodedBytes;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return the measurement as read by {@link #parse(String)}. */
+        @Override
+        public String toString() {
+            return wireBytes + " " + decodedBytes + " " + kind;
+        }
+
+        /** @return the measurement written by {@link #toString()}, or null
+        if it is not one. */
+        public static Measurement parse(String s) {
+            String[] parts = s.split(" ");
+            if (parts.length!=3) {
+                return null;
+            }
+            try {
+                return new Measurement(Long.parseLong(parts[0]),
+                    Long.parseLong(parts[1]),
+                    Kind.valueOf(parts[2]));
+            } catch(IllegalArgumentException iae) {
+                return null;
+            }
+        }
+    }
+
+    /** @return the sizes and kind of the resource at <code>url</code>,
+    read as it streams. */
+    public Measurement measure(URL url) throws IOException {
+        URLConnection urlc = url.openConnection();
+        if (urlc instanceof HttpURLConnection) {
+            urlc.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        CountingInputStream wire = new CountingInputStream(urlc.getInputStream());
+        try {
+            InputStream decoded = decode(wire, urlc.getContentEncoding());
+            byte[] block = new byte[BLOCK];
+            byte[] head = new byte[HEAD];
+            int headLength = 0;
+            long decodedBytes = 0;
+            int read = decoded.read(block);
+            while ( read>-1 ) {
+                if (headLength<HEAD) {
+                    int copied = Math.min(read, HEAD - headLength);
+                    System.arraycopy(block, 0, head, headLength, copied);
+                    headLength += copied;
+                }
+                decodedBytes += read;
+                read = decoded.read(block);
+            }
+            return new Measurement(wire.getCount(), decodedBytes,
+                getKind(head, headLength));
+        }
+        finally {
+            wire.close();
+        }
+    }
+
+    private static InputStream decode(InputStream is, String encoding)
+        throws IOException {
+
+        if (encoding==null) {
+            return is;
+        }
+        encoding = encoding.trim().toLowerCase();
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            return new GZIPInputStream(is, BLOCK);
+        }
+        if ("deflate".equals(encoding)) {
+            return new InflaterInputStream(is);
+        }
+        // identity, or nothing that can be decoded here
+        return is;
+    }
+
+    /** @return the kind of content starting with <code>head</code>. */
+    static Kind getKind(byte[] head, int length) {
+        int start = 0;
+        if (length>=3 && (head[0]&0xff)==0xEF && (head[1]&0xff)==0xBB
+                && (head[2]&0xff)==0xBF) {
+            // UTF-8 byte order mark
+            start = 3;
+        }
+        while (start<length && Character.isWhitespace((char)head[start])) {
+            start++;
+        }
+        if (start<length && head[start]=='<') {
+            return Kind.XML;
+        }
+        if (length<4) {
+            return Kind.UNKNOWN;
+        }
+        int b0 = head[0]&0xff;
+        int b1 = head[1]&0xff;
+        int b2 = head[2]&0xff;
+        int b3 = head[3]&0xff;
+        if (b0=='P' && b1=='K' && (b2==3 || b2==5) && (b3==4 || b3==6)) {
+            // a local file header, or the end record of an empty zip
+            return Kind.ZIP;
+        }
+        if (b0=='G' && b1=='I' && b2=='F' && b3=='8') {
+            return Kind.GIF;
+        }
+        if (((b0 << 24) | (b1 << 16) | (b2 << 8) | b3)==PNG_SIGNATURE) {
+            return Kind.PNG;
+        }
+        if (b0==0xFF && b1==0xD8 && b2==0xFF) {
+            return Kind.JPEG;
+        }
+        return Kind.UNKNOWN;
+    }
+
+    /** Counts the bytes read through it. */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b>=0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read>0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
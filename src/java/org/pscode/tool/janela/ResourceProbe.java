@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.IOException;
+import java.net.URL;
+
+/** What one request for a resource revealed: status, length, type,
+caching headers and how long the server took to answer.  Checks read
+this instead of opening their own connection. */
+public class ResourceProbe {
+
+    /** Status of probes of resources that are not fetched over HTTP. */
+    public static final int NOT_HTTP = -1;
+
+    private final URL url;
+    private final String method;
+    private final int status;
+    private final String statusMessage;
+    private final long contentLength;
+    private final String contentType;
+    private final String contentEncoding;
+    private final String eTag;
+    private final long lastModified;
+    private final long expires;
+    private final String cacheControl;
+    private final long elapsed;
+    private final IOException failure;
+
+    ResourceProbe(URL url, String method,
+            int status, String statusMessage,
+            long contentLength, String contentType, String contentEncoding,
+            String eTag, long lastModified, long expires, String cacheControl,
+            long elapsed) {
+        this.url = url;
+        this.method = method;
+        this.status = status;
+        this.statusMessage = statusMessage;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.expires = expires;
+        this.cacheControl = cacheControl;
+        this.elapsed = elapsed;
+        this.failure = null;
+    }
+
+    ResourceProbe(URL url, String method, IOException failure, long elapsed) {
+        this.url = url;
+        this.method = method;
+        this.status = NOT_HTTP;
+        this.statusMessage = null;
+        this.contentLength = -1;
+        this.contentType = null;
+        this.contentEncoding = null;
+        this.eTag = null;
+        this.lastModified = 0;
+        this.expires = 0;
+        this.cacheControl = null;
+        this.elapsed = elapsed;
+        this.failure = failure;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /** @return HEAD or GET for HTTP resources, otherwise null. */
+    public String getMethod() {
+        return method;
+    }
+
+    /** @return the HTTP status code, or {@link #NOT_HTTP}. */
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    /** @return the reported length in bytes, or -1 if not known. */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /** @return the Last-Modified time in millis, or 0 if not known. */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /** @return the Expires time in millis, or 0 if not known. */
+    public long getExpires() {
+        return expires;
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    /** @return the time in millis until the response headers arrived. */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /** @return the exception that prevented the request, or null. */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** @return true if the resource can be fetched. */
+    public boolean isAvailable() {
+        return failure==null && (status==NOT_HTTP || status<400);
+    }
+
+    /** Throw the reason the resource can not be fetched, if any. */
+    public void checkAvailable() throws IOException {
+        if (failure!=null) {
+            throw failure;
+        }
+        if (!isAvailable()) {
+            throw new IOException("Server returned HTTP " + status
+                + (statusMessage == null ? "" : " " + statusMessage)
+                + " for " + url);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (method == null ? "" : method + " ") + url + " -> "
+            + (failure == null ? String.valueOf(status) : failure.toString())
+            + " (" + elapsed + "ms)";
+    }
+}
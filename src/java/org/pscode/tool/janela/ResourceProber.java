@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/** Probes each resource URL once, with a HEAD request falling back to
+GET when the server refuses HEAD, and remembers the result.  Checks of
+the same href share the one probe, even when they run concurrently.
+With an HttpCache the requests are conditional, and a resource that has
+not changed is described from the cache. */
+public class ResourceProber {
+
+    private final HttpCache cache;
+
+    /** Runs a probe in the thread that asks for it. */
+    private static final Executor CALLER = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final ConcurrentMap<String, CompletableFuture<ResourceProbe>> probes =
+        new ConcurrentHashMap<String, CompletableFuture<ResourceProbe>>();
+
+    public ResourceProber() {
+        this(null);
+    }
+
+    /** @param cache the cache to revalidate against, or null for none. */
+    public ResourceProber(HttpCache cache) {
+        this.cache = cache;
+    }
+
+    public HttpCache getCache() {
+        return cache;
+    }
+
+    /** @return the probe of <code>url</code>, making the request if this
+    is the first time it was asked for. */
+    public ResourceProbe probe(URL url) {
+        try {
+            return probeAsync(url, CALLER).join();
+        } catch(CompletionException ce) {
+            IOException ioe = new IOException(ce.getCause().getMessage());
+            ioe.initCause(ce.getCause());
+            return new ResourceProbe(url, null, ioe, 0);
+        }
+    }
+
+    /** @return the probe of <code>url</code>, made on <code>executor</code>
+    if this is the first time it was asked for. */
+    public CompletableFuture<ResourceProbe> probeAsync(final URL url, Executor executor) {
+        String key = url.toExternalForm();
+        CompletableFuture<ResourceProbe> future = probes.get(key);
+        if (future==null) {
+            CompletableFuture<ResourceProbe> created = new CompletableFuture<ResourceProbe>();
+            future = probes.putIfAbsent(key, created);
+            if (future==null) {
+                future = created;
+                CompletableFuture.supplyAsync(new Supplier<ResourceProbe>() {
+                    public ResourceProbe get() {
+                        return request(url);
+                    }
+                }, executor).whenComplete(new Completion(created));
+            }
+        }
+        return future;
+    }
+
+    /** Forget every probe made so far. */
+    public void clear() {
+        probes.clear();
+    }
+
+    /** Passes the outcome of a request on to the future of its probe. */
+    private static class Completion
+        implements BiConsumer<ResourceProbe, Throwable> {
+
+        private final CompletableFuture<ResourceProbe> future;
+
+        Completion(CompletableFuture<ResourceProbe> future) {
+            this.future = future;
+        }
+
+        public void accept(ResourceProbe probe, Throwable failure) {
+            if (failure!=null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(probe);
+            }
+        }
+    }
+
+    private ResourceProbe request(URL url) {
+        long start = System.currentTimeMillis();
+        try {
+            URLConnection urlc = url.openConnection();
+            if (urlc instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection)urlc;
+                http.setRequestMethod("HEAD");
+                String method = "HEAD";
+                HttpCache.Entry cached = cache == null ? null : cache.addValidators(http);
+                int status = http.getResponseCode();
+                if (status>=400 && status!=HttpURLConnection.HTTP_NOT_FOUND
+                        && status!=HttpURLConnection.HTTP_GONE) {
+                    // some servers refuse or mishandle HEAD, ask properly
+                    http.disconnect();
+                    http = (HttpURLConnection)url.openConnection();
+                    method = "GET";
+                    cached = cache == null ? null : cache.addValidators(http);
+                    status = http.getResponseCode();
+                }
+                ResourceProbe probe;
+                if (status==HttpURLConnection.HTTP_NOT_MODIFIED && cached!=null) {
+                    cache.revalidated(url);
+                    probe = new ResourceProbe(url, method,
+                        HttpURLConnection.HTTP_OK, "OK (not modified)",
+                        cached.getContentLength(),
+                        cached.getContentType(),
+                        cached.getContentEncoding(),
+                        cached.getETag(),
+                        cached.getLastModified(),
+                        http.getExpiration(),
+                        http.getHeaderField("Cache-Control"),
+                        System.currentTimeMillis() - start);
+                } else {
+                    probe = toProbe(url, http, method, status, start);
+                    if (cache!=null && status>=200 && status<300) {
+                        cache.update(http, null);
+                    }
+                }
+                closeQuietly(http);
+                return probe;
+            }
+            urlc.connect();
+            ResourceProbe probe = toProbe(url, urlc, null, ResourceProbe.NOT_HTTP, start);
+            closeQuietly(urlc);
+            return probe;
+        } catch(IOException ioe) {
+            return new ResourceProbe(url, null, ioe,
+                System.currentTimeMillis() - start);
+        }
+    }
+
+    private ResourceProbe toProbe(URL url, URLConnection urlc,
+            String method, int status, long start) throws IOException {
+        String message = urlc instanceof HttpURLConnection
+            ? ((HttpURLConnection)urlc).getResponseMessage()
+            : null;
+        return new ResourceProbe(url, method, status, message,
+            urlc.getContentLengthLong(),
+            urlc.getContentType(),
+            urlc.getContentEncoding(),
+            urlc.getHeaderField("ETag"),
+            urlc.getLastModified(),
+            urlc.getExpiration(),
+            urlc.getHeaderField("Cache-Control"),
+            System.currentTimeMillis() - start);
+    }
+
+    /** Release the connection without reading the body. */
+    private static void closeQuietly(URLConnection urlc) {
+        if (urlc instanceof HttpURLConnection) {
+            ((HttpURLConnection)urlc).disconnect();
+            return;
+        }
+        try {
+            InputStream is = urlc.getInputStream();
+            is.close();
+        } catch(IOException ioe) {
+            // nothing was read, nothing to release
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.pscode.tool.janela;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Runs the checks of the resources of a descriptor concurrently.
+<p>
+The work of a check is handed to {@link #getExecutor(String)}, so it can
+be chained to the probe it needs and nothing waits on the network but
+the threads doing it.  At most <code>maxPerHost</code> tasks talk to any
+one host at the same time; the tasks over that limit wait in a queue of
+their host, not on a thread, so one busy host does not hold up the
+others. */
+public class ResourceVerifier {
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_PER_HOST = 4;
+
+    private static ResourceVerifier defaultVerifier;
+
+    private final ExecutorService executor;
+    private final int maxPerHost;
+    private final ConcurrentMap<String, Host> hosts =
+        new ConcurrentHashMap<String, Host>();
+
+    public ResourceVerifier(ExecutorService executor, int maxPerHost) {
+        if (maxPerHost<1) {
+            throw new IllegalArgumentException("maxPerHost must be positive: " + maxPerHost);
+        }
+        this.executor = executor;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /** @return a verifier shared by the whole process, running each check
+    on a virtual thread, or on a pool of {@link #DEFAULT_THREADS} daemon
+    threads where there are none (see {@link NetworkExecutors}). */
+    public static synchronized ResourceVerifier getDefault() {
+        if (defaultVerifier==null) {
+            defaultVerifier = new ResourceVerifier(
+                NetworkExecutors.newExecutor("janela-resource-", DEFAULT_THREADS),
+                DEFAULT_PER_HOST);
+        }
+        return defaultVerifier;
+    }
+
+    /** Wait until fewer than <code>maxPerHost</code> requests are talking
+    to <code>host</code>, for requests made outside of {@link #getExecutor(String)}.
+    Every call must be followed by one of {@link #release(String)}. */
+    public void acquire(String host) throws InterruptedException {
+        getHost(host).permits.acquire();
+    }
+
+    public void release(String host) {
+        getHost(host).release();
+    }
+
+    /** @return an executor running each task on the threads of the
+    verifier, once fewer than <code>maxPerHost</code> other tasks are
+    talking to <code>host</code>, or at once if <code>host</code> is null
+    or empty (e.g. a file: resource).  Until then the task waits in the
+    queue of the host. */
+    public Executor getExecutor(String host) {
+        if (host==null || host.length()==0) {
+            return executor;
+        }
+        return getHost(host);
+    }
+
+    private Host getHost(String name) {
+        name = name.toLowerCase();
+        Host host = hosts.get(name);
+        if (host==null) {
+            Host created = new Host();
+            host = hosts.putIfAbsent(name, created);
+            if (host==null) {
+                host = created;
+            }
+        }
+        return host;
+    }
+
+    /** The permits of one host, and the tasks waiting for one.  A task is
+    only handed to the threads once it holds a permit, which it passes on
+    to the next task waiting when it is done. */
+    private class Host implements Executor {
+
+        private final Semaphore permits = new Semaphore(maxPerHost);
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+
+        public void execute(Runnable command) {
+            waiting.add(command);
+            startWaiting();
+        }
+
+        void release() {
+            permits.release();
+            startWaiting();
+        }
+
+        /** Start waiting tasks for as long as there are permits.  Both a
+        new task and a released permit end up here, so neither is missed. */
+        private void startWaiting() {
+            while (!waiting.isEmpty() && permits.tryAcquire()) {
+                final Runnable command = waiting.poll();
+                if (command==null) {
+                    // taken by another thread since
+                    permits.release();
+                    continue;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                command.run();
+                            }
+                            finally {
+                                release();
+                            }
+                        }
+                    });
+                } catch(RuntimeException re) {
+                    permits.release();
+                    throw re;
+                }
+            }
+        }
+    }
+
+    static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.xml.sax.SAXException;
+
+/** Compiles each JNLP schema once per process and hands out pooled,
+schema-aware document builders and validators.  A compiled Schema is
+immutable and thread-safe; the builders and validators are not, so each
+one is used by a single thread between borrow and release.
+<p>
+There is one cache per schema, kept in a pool shared by the whole
+process, and {@link #forSpec(String)} picks the one for the spec
+attribute of a descriptor.  A batch mixing descriptors of several specs
+compiles each schema the first time it is needed, and never again. */
+public final class SchemaCache {
+
+    private static final boolean DEBUG = false;
+
+    /** For descriptors of spec 1.0. */
+    public static final String JNLP_1_0_SCHEMA = "JNLP-1.0.xsd";
+    /** For descriptors of spec 1.5 and 6.0. */
+    public static final String JNLP_SCHEMA = "JNLP-6.0.xsd";
+    /** For descriptors of spec 7.0, 8.0 and those of OpenWebStart. */
+    public static final String JNLP_7_0_SCHEMA = "JNLP-7.0.xsd";
+
+    /** The spec of a descriptor without a spec attribute. */
+    public static final String DEFAULT_SPEC = "1.0+";
+
+    private static final int MAX_IDLE =
+        Runtime.getRuntime().availableProcessors() * 2;
+
+    /** How far into a stream the root element is looked for. */
+    private static final int SPEC_READ_LIMIT = 64*1024;
+
+    private static final ConcurrentMap<String, SchemaCache> POOL =
+        new ConcurrentHashMap<String, SchemaCache>();
+
+    private static XMLInputFactory inputFactory;
+
+    private final String schemaName;
+    private final Queue<DocumentBuilder> builders =
+        new ConcurrentLinkedQueue<DocumentBuilder>();
+    private final Queue<Validator> validators =
+        new ConcurrentLinkedQueue<Validator>();
+
+    private volatile Schema schema;
+    private DocumentBuilderFactory factory;
+
+    private SchemaCache(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    /** @return the cache of {@link #JNLP_SCHEMA}. */
+    public static SchemaCache getDefault() {
+        return getInstance(JNLP_SCHEMA);
+    }
+
+    /** @return the cache of the schema named <code>schemaName</code>, the
+    same one for the whole process. */
+    public static SchemaCache getInstance(String schemaName) {
+        SchemaCache cache = POOL.get(schemaName);
+        if (cache==null) {
+            SchemaCache created = new SchemaCache(schemaName);
+            cache = POOL.putIfAbsent(schemaName, created);
+            if (cache==null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    /** @return the cache of the schema for a descriptor with the spec
+    attribute <code>spec</code>, null meaning {@link #DEFAULT_SPEC}. */
+    public static SchemaCache forSpec(String spec) {
+        return getInstance(getSchemaName(spec));
+    }
+
+    /** @return the name of the schema for the lowest version in
+    <code>spec</code>, a version string such as "1.0+" or "1.5 6.0".
+    Unknown specs get {@link #JNLP_SCHEMA}. */
+    public static String getSchemaName(String spec) {
+        if (spec==null) {
+            spec = DEFAULT_SPEC;
+        }
+        int lowest = -1;
+        for (String version : spec.trim().split("\\s+")) {
+            int number = parseVersion(version);
+            if (number>=0 && (lowest<0 || number<lowest)) {
+                lowest = number;
+            }
+        }
+        if (lowest<0) {
+            return JNLP_SCHEMA;
+        } else if (lowest<105) {
+            return JNLP_1_0_SCHEMA;
+        } else if (lowest<700) {
+            return JNLP_SCHEMA;
+        }
+        return JNLP_7_0_SCHEMA;
+    }
+
+    /** @return major * 100 + minor of a version such as "6.0+" or
+    "1.5*", or -1 if it does not start with a number. */
+    private static int parseVersion(String version) {
+        String[] parts = version.split("[._\\-+*]");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length>1 && parts[1].length()>0
+                ? Integer.parseInt(parts[1])
+                : 0;
+            return major*100 + Math.min(minor, 99);
+        } catch(NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /** Read the spec attribute of the root element at the start of
+    <code>is</code>, which is left open.  A stream that supports marks is
+    reset to where it was, so it can still be parsed.
+    @return the spec, or null if there is none or no root element was
+    found. */
+    public static String readSpec(InputStream is) throws IOException {
+        return readRootAttributes(is).get("spec");
+    }
+
+    /** Read the attributes of the root element at the start of
+    <code>is</code>, as {@link #readSpec(InputStream)} does.
+    @return the attributes without a namespace by name, empty if no root
+    element was found. */
+    public static Map<String, String> readRootAttributes(InputStream is)
+        throws IOException {
+
+        Map<String, String> attributes = new HashMap<String, String>();
+        boolean marked = is.markSupported();
+        if (marked) {
+            is.mark(SPEC_READ_LIMIT);
+        }
+        try {
+            XMLStreamReader reader = newReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next()==XMLStreamConstants.START_ELEMENT) {
+                        for (int ii=0; ii<reader.getAttributeCount(); ii++) {
+                            String namespace = reader.getAttributeNamespace(ii);
+                            if (namespace==null || namespace.length()==0) {
+                                attributes.put(reader.getAttributeLocalName(ii),
+                                    reader.getAttributeValue(ii));
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        } catch(XMLStreamException xse) {
+            // not well-formed, the parse will tell
+        }
+        finally {
+            if (marked) {
+                is.reset();
+            }
+        }
+        return attributes;
+    }
+
+    /** @return a reader of <code>is</code>, from a factory that is not
+    guaranteed to be thread-safe. */
+    private static synchronized XMLStreamReader newReader(InputStream is)
+        throws XMLStreamException {
+
+        if (inputFactory==null) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            // only the root element is wanted, nothing it refers to
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            inputFactory = factory;
+        }
+        return inputFactory.createXMLStreamReader(is);
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /** @return the compiled schema, compiling it on first use. */
+    public Schema getSchema() throws SAXException, IOException {
+        Schema result = schema;
+        if (result==null) {
+            synchronized (this) {
+                result = schema;
+                if (result==null) {
+                    result = compile();
+                    schema = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Schema compile() throws SAXException, IOException {
+        URL schemaSource = getSchemaSource();
+        if (schemaSource==null) {
+            throw new IOException("Schema " + schemaName + " not found on the class path");
+        }
+        debug( "schemaSource: " + schemaSource );
+
+        InputStream schemaStream = schemaSource.openStream();
+        try {
+            StreamSource ss = new StreamSource( schemaStream, schemaSource.toString() );
+            SchemaFactory schemaFactory =
+                SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setFeature(
+                "http://apache.org/xml/features/validation/schema-full-checking", true);
+            return schemaFactory.newSchema(ss);
+        }
+        finally {
+            schemaStream.close();
+        }
+    }
+
+    private URL getSchemaSource() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        URL url = loader == null ? null : loader.getResource(schemaName);
+        if (url==null) {
+            url = SchemaCache.class.getClassLoader().getResource(schemaName);
+        }
+        return url;
+    }
+
+    /** Borrow a namespace aware builder that validates against the schema
+    while it parses.  Return it with {@link #release(DocumentBuilder)}. */
+    public DocumentBuilder borrowBuilder()
+        throws ParserConfigurationException, SAXException, IOException {
+
+        DocumentBuilder builder = builders.poll();
+        if (builder==null) {
+            builder = newBuilder();
+        }
+        return builder;
+    }
+
+    public void release(DocumentBuilder builder) {
+        builder.reset();
+        if (builders.size()<MAX_IDLE) {
+            builders.offer(builder);
+        }
+    }
+
+    /** Borrow a validator for the schema.  Return it with
+    {@link #release(Validator)}. */
+    public Validator borrowValidator() throws SAXException, IOException {
+        Validator validator = validators.poll();
+        if (validator==null) {
+            validator = getSchema().newValidator();
+        }
+        return validator;
+    }
+
+    public void release(Validator validator) {
+        validator.reset();
+        if (validators.size()<MAX_IDLE) {
+            validators.offer(validator);
+        }
+    }
+
+    private DocumentBuilder newBuilder()
+        throws ParserConfigurationException, SAXException, IOException {
+
+        Schema compiled = getSchema();
+        // factories are not thread-safe, builders come from it one at a time
+        synchronized (this) {
+            if (factory==null) {
+                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+                dbf.setNamespaceAware(true);
+                dbf.setSchema(compiled);
+                try {
+                    // the whole tree is walked once, deferring its expansion only costs
+                    dbf.setFeature(
+                        "http://apache.org/xml/features/dom/defer-node-expansion", false);
+                } catch(ParserConfigurationException pce) {
+                    // not Xerces, nodes are not expanded lazily
+                }
+                factory = dbf;
+            }
+            return factory.newDocumentBuilder();
+        }
+    }
+
+    private static void debug(Object obj) {
+        if (DEBUG) {
+            System.out.println(obj);
+        }
+    }
+}
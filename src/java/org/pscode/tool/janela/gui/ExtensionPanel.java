@@ -21,10 +21,6 @@ package org.pscode.tool.janela.gui;
 import java.awt.BorderLayout;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,7 +32,8 @@ import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
 
-import org.pscode.tool.janela.JNLPAnalyser;
+import org.pscode.tool.janela.AnalysisResult;
+import org.pscode.tool.janela.DescriptorSnapshot;
 import org.pscode.tool.janela.LaunchError;
 
 public class ExtensionPanel extends JPanel {
@@ -87,38 +84,25 @@ public class ExtensionPanel extends JPanel {
     }
     
     /** Load a file into the editing area.
-    @param is An input stream pointing to the desired file. */
-    private void loadFile(URL url) {
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(
-                new InputStreamReader(url.openStream()));
-            content.read(reader, "text");
-            content.setCaretPosition(0);
-        }
-        catch (IOException e) {
-            content.setText(e.getMessage());
+    @param snapshot The descriptor as fetched by the analyser. */
+    private void loadFile(DescriptorSnapshot snapshot) {
+        if(snapshot == null) {
+            content.setText("");
         }
-        finally {
-            if(reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    // ignore;
-                }
-            }
+        else {
+            content.setText(snapshot.getText());
+            content.setCaretPosition(0);
         }
     }
 
-    public void setAnalyzer(JNLPAnalyser analyser) {
+    public void setResult(AnalysisResult analysis) {
         content.setText("");
         errorList.clear();
-        if(analyser != null) {
-            loadFile(analyser.getURL());
+        if(analysis != null) {
+            loadFile(analysis.getSnapshot());
             
             String result;
-            if ( analyser.isXMLValid() ) {
+            if ( analysis.isXMLValid() ) {
                 result = "This document is valid according to the schema.  " +
                 "The data might still be wrong, but at least it is valid!";
             } else {
@@ -130,7 +114,7 @@ public class ExtensionPanel extends JPanel {
             // TODO Do something with this result text?
             System.out.println(result);
             
-            List<LaunchError> errors = new ArrayList<LaunchError>(analyser.getErrors());
+            List<LaunchError> errors = new ArrayList<LaunchError>(analysis.getErrors());
 //            Collections.sort(sortedErrors, new Comparator<LaunchError>()
 //            {
 //              @Override
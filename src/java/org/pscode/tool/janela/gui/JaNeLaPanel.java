@@ -35,6 +35,8 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -46,15 +48,20 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
-import javax.swing.SwingWorker;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import org.pscode.tool.janela.AnalysisResult;
+import org.pscode.tool.janela.DescriptorWatcher;
+import org.pscode.tool.janela.ExtensionCrawler;
 import org.pscode.tool.janela.JNLPAnalyser;
 import org.pscode.tool.janela.JaNeLA;
-import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.ResourceProber;
+import org.pscode.tool.janela.model.DescriptorDiff;
 
 public class JaNeLaPanel extends JPanel {
 
@@ -67,14 +74,20 @@ public class JaNeLaPanel extends JPanel {
 
     private Action openFileAction;
     private Action openURLAction;
+    private Action watchAction;
     private Action launchAction;
     private Action textReportAction;
     private Action usageHelpAction;
     private Action errorsHelpAction;
     private Action aboutAction;
     
-    private final List<JNLPAnalyser> extensionAnalysers = new ArrayList<JNLPAnalyser>();
-    private JNLPAnalyser mainAnalyser;
+    private final JNLPAnalyser analyser = new JNLPAnalyser();
+    private final ExtensionCrawler crawler = new ExtensionCrawler(analyser);
+    private final List<AnalysisResult> extensionResults = new ArrayList<AnalysisResult>();
+    private AnalysisResult mainResult;
+    private AnalyzerTask analyzerTask;
+    private ResourceProber resourceProber;
+    private DescriptorWatcher watcher;
     private URL currentJNLP;
     
     public JaNeLaPanel() {
@@ -132,6 +145,21 @@ public class JaNeLaPanel extends JPanel {
         openURLAction.putValue(Action.ACCELERATOR_KEY, 
                 KeyStroke.getKeyStroke(KeyEvent.VK_U,
                         Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+
+        watchAction = new AbstractAction("Watch file") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(Boolean.TRUE.equals(getValue(Action.SELECTED_KEY))) {
+                    startWatching();
+                }
+                else {
+                    stopWatching();
+                }
+            }
+        };
+        watchAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_W);
+        watchAction.putValue(Action.SELECTED_KEY, Boolean.FALSE);
+        watchAction.setEnabled(false);
    
         textReportAction = new AbstractAction("Text report") {
             @Override
@@ -225,10 +253,10 @@ public class JaNeLaPanel extends JPanel {
         sb.append(JaNeLA.class.getPackage().getImplementationVersion());
         sb.append("\n\n\n");
         
-        sb.append( mainAnalyser.getReport() );
+        sb.append( mainResult.getReport() );
     
-        for (JNLPAnalyser analyser : extensionAnalysers) {
-            sb.append( analyser.getReport() );
+        for (AnalysisResult result : extensionResults) {
+            sb.append( result.getReport() );
         }
         
         return sb.toString();
@@ -261,6 +289,11 @@ public class JaNeLaPanel extends JPanel {
         toolBar.add(new JLabel("Open JNLP descriptor from: "));
         toolBar.add(openFileAction).setText("File");
         toolBar.add(openURLAction).setText("URL");
+        toolBar.addSeparator();
+        JToggleButton watchButton = new JToggleButton(watchAction);
+        watchButton.setText("Watch");
+        watchButton.setFocusable(false);
+        toolBar.add(watchButton);
 //        toolBar.addSeparator();
 //        toolBar.add(launchAction);
 
@@ -277,7 +310,7 @@ public class JaNeLaPanel extends JPanel {
     }
     
     public List<Action> getFileActions() {
-        return Arrays.asList(openFileAction, openURLAction); //, launchAction);
+        return Arrays.asList(openFileAction, openURLAction, watchAction); //, launchAction);
     }
 
     public List<Action> getReportActions() {
@@ -302,14 +335,26 @@ public class JaNeLaPanel extends JPanel {
             for(int i = tabbedPane.getTabCount() - 1; i > 0; i--) {
                 tabbedPane.removeTabAt(i);
             }
-            getMainJNLPPanel().setAnalyzer(null);
+            getMainJNLPPanel().setResult(null);
 
-            mainAnalyser = null;
-            extensionAnalysers.clear();
+            mainResult = null;
+            extensionResults.clear();
+            if(analyzerTask != null) {
+                analyzerTask.cancel();
+                analyzerTask = null;
+            }
+            stopWatching();
+            // fresh probes for every descriptor opened, shared with its watcher
+            resourceProber = new ResourceProber(analyser.getHttpCache());
+            crawler.setResourceProber(resourceProber);
             
             if(currentJNLP != null) {
                 startProgress();
-                new AnalyzerWorker(currentJNLP, true).execute();
+                analyzerTask = new AnalyzerTask();
+                analyzerTask.start(currentJNLP);
+                if(Boolean.TRUE.equals(watchAction.getValue(Action.SELECTED_KEY))) {
+                    startWatching();
+                }
             }
         }
         catch (Exception exception) {
@@ -320,6 +365,75 @@ public class JaNeLaPanel extends JPanel {
             openURLAction.setEnabled(true);
             launchAction.setEnabled(currentJNLP != null);
             textReportAction.setEnabled(currentJNLP != null);
+            watchAction.setEnabled(getCurrentFile() != null);
+        }
+    }
+
+    /** @return the descriptor being shown if it is a local file, or null. */
+    private File getCurrentFile() {
+        if(currentJNLP == null || !"file".equals(currentJNLP.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(currentJNLP.toURI());
+        }
+        catch(Exception e) {
+            return null;
+        }
+    }
+
+    /** Analyse the main descriptor again whenever it is saved.  Only its
+    tab is updated, the extensions are not crawled again. */
+    private void startWatching() {
+        stopWatching();
+        File file = getCurrentFile();
+        if(file == null) {
+            return;
+        }
+        try {
+            final DescriptorWatcher started = new DescriptorWatcher(
+                    analyser, file, resourceProber, new DescriptorWatcher.Listener() {
+                public void analysed(final AnalysisResult result, final DescriptorDiff diff) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            showWatched(result, diff);
+                        }
+                    });
+                }
+            });
+            watcher = started;
+            started.start();
+            status.setText("Watching " + file.getName() + " for changes");
+        }
+        catch(IOException exception) {
+            watcher = null;
+            watchAction.putValue(Action.SELECTED_KEY, Boolean.FALSE);
+            showError(exception);
+        }
+    }
+
+    private void stopWatching() {
+        if(watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    private void showWatched(AnalysisResult result, DescriptorDiff diff) {
+        if(watcher == null || !result.getURL().equals(currentJNLP)) {
+            return;
+        }
+        mainResult = result;
+        getMainJNLPPanel().setResult(result);
+        if(diff == null) {
+            status.setText("Watching " + watcher.getFile().getName()
+                    + ": the last save could not be read");
+        }
+        else if(!diff.isContextChanged()) {
+            int checked = diff.getAddedResources().size()
+                    + diff.getAddedJavaRuntimes().size();
+            status.setText("Watching " + watcher.getFile().getName()
+                    + ": " + checked + " element(s) checked again at the last save");
         }
     }
 
@@ -388,64 +502,77 @@ public class JaNeLaPanel extends JPanel {
         JOptionPane.showMessageDialog(this, result);
     }
     
-    private class AnalyzerWorker extends SwingWorker<JNLPAnalyser, LaunchError> {
-
-        private final URL url;
-        private final boolean main;
-
-        public AnalyzerWorker(URL url, boolean main) {
-            this.url = url;
-            this.main = main;
+    /** Shows the descriptors of one crawl as they are analysed. */
+    private class AnalyzerTask implements ExtensionCrawler.Listener {
+
+        private volatile boolean cancelled;
+
+        void start(URL url) {
+            crawler.crawlAsync(url, this).whenComplete(
+                new BiConsumer<List<ExtensionCrawler.Node>, Throwable>() {
+                    public void accept(List<ExtensionCrawler.Node> nodes, final Throwable failure) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                done(failure);
+                            }
+                        });
+                    }
+                });
         }
-        
-        @Override
-        protected JNLPAnalyser doInBackground() throws Exception {
-            JNLPAnalyser analyser = new JNLPAnalyser(url);
-            analyser.analyze();
-            return analyser;
+
+        /** Ignore whatever the crawl still finds. */
+        void cancel() {
+            cancelled = true;
         }
-        
-        @Override
-        protected void done() {
-            if(!isCancelled()) {
-                try {
-                    JNLPAnalyser analyser = get();
-                    String path = getJNLPName(analyser.getURL());
-                    
-                    ExtensionPanel panel;
-                    if(main) {
-                        mainAnalyser = analyser;
-                        
-                        panel = getMainJNLPPanel();
-                        tabbedPane.setTitleAt(0, "Main JNLP: " + path);
-                    }
-                    else {
-                        extensionAnalysers.add(analyser);
-                        
-                        panel = new ExtensionPanel();
-                        tabbedPane.addTab("Extension: " + path, panel);
+
+        public void analysed(final ExtensionCrawler.Node node) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    if(!cancelled) {
+                        show(node);
                     }
+                }
+            });
+        }
 
-                    panel.setAnalyzer(analyser);
+        private void show(ExtensionCrawler.Node node) {
+            AnalysisResult result = node.getResult();
+            String path = getJNLPName(result.getURL());
 
-                    // TODO Check for recursive JNLPs?
-                    for(URL extension : analyser.getExtensions()) {
-                        new AnalyzerWorker(extension, false).execute();
-                    }
+            ExtensionPanel panel;
+            if(node.getDepth() == 0) {
+                mainResult = result;
 
-                    boolean allExtensionsDone = mainAnalyser != null &&
-                        extensionAnalysers.size() == mainAnalyser.getExtensions().size();
-                    if(main || allExtensionsDone) {
-                        stopProgress(!main || allExtensionsDone);
-                    }
-                }
-                catch (Exception e) {
-                    showError(e);
-                }
+                panel = getMainJNLPPanel();
+                tabbedPane.setTitleAt(0, "Main JNLP: " + path);
+                stopProgress(false);
             }
             else {
+                extensionResults.add(result);
+
+                panel = new ExtensionPanel();
+                tabbedPane.addTab("Extension: " + path, panel);
+            }
+
+            panel.setResult(result);
+        }
+
+        private void done(Throwable failure) {
+            if(cancelled) {
+                return;
+            }
+            if(failure instanceof CompletionException) {
+                failure = failure.getCause();
+            }
+            if(failure == null) {
                 stopProgress(true);
             }
+            else if(failure instanceof Exception) {
+                showError((Exception)failure);
+            }
+            else {
+                showError(new Exception(failure));
+            }
         }
 
         private String getJNLPName(URL url) {
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/** Builds a JNLPDescriptor in one walk of the document.  Elements are
+picked up wherever they appear, so an invalid descriptor is modelled as
+far as it goes; unknown elements are walked through. */
+class DescriptorBuilder {
+
+    private final Map<String, List<Resource>> resourcesByElement =
+        new HashMap<String, List<Resource>>();
+    private final List<JavaRuntime> javaRuntimes = new ArrayList<JavaRuntime>();
+    private final List<Property> properties = new ArrayList<Property>();
+    private final Map<String, String> descriptions = new HashMap<String, String>();
+    private String defaultDescription;
+    private boolean offlineAllowed;
+    private boolean desktopShortcut;
+    private boolean allPermissions;
+    private boolean j2eePermissions;
+
+    /** What is collected for the element being read. */
+    private static class Scope {
+        final List<Information> information = new ArrayList<Information>();
+        final List<Resources> resources = new ArrayList<Resources>();
+        final List<Resource> resourceList = new ArrayList<Resource>();
+        final List<JavaRuntime> javaRuntimes = new ArrayList<JavaRuntime>();
+        final List<Property> properties = new ArrayList<Property>();
+        final Map<String, String> descriptions = new LinkedHashMap<String, String>();
+        String defaultDescription;
+        String title;
+        String vendor;
+        boolean offlineAllowed;
+        boolean desktopShortcut;
+    }
+
+    JNLPDescriptor build(Document document) {
+        Element root = document.getDocumentElement();
+        Scope scope = new Scope();
+        readChildren(root, scope);
+
+        for (Map.Entry<String, List<Resource>> entry : resourcesByElement.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return new JNLPDescriptor(
+            getAttribute(root, "spec"),
+            getAttribute(root, "version"),
+            getAttribute(root, "codebase"),
+            getAttribute(root, "href"),
+            document.getXmlEncoding(),
+            scope.information,
+            new Security(allPermissions, j2eePermissions),
+            scope.resources,
+            resourcesByElement,
+            javaRuntimes,
+            properties,
+            descriptions,
+            defaultDescription,
+            offlineAllowed,
+            desktopShortcut);
+    }
+
+    private void readChildren(Element parent, Scope scope) {
+        for (Node node=parent.getFirstChild(); node!=null; node=node.getNextSibling()) {
+            if (node.getNodeType()==Node.ELEMENT_NODE) {
+                read(parent, (Element)node, scope);
+            }
+        }
+    }
+
+    private void read(Element parent, Element element, Scope scope) {
+        String name = element.getTagName();
+        if ("information".equals(name)) {
+            Scope inner = new Scope();
+            readChildren(element, inner);
+            scope.information.add( new Information(
+                getAttribute(element, "os"),
+                getAttribute(element, "arch"),
+                getAttribute(element, "platform"),
+                getAttribute(element, "locale"),
+                inner.title,
+                inner.vendor,
+                inner.descriptions,
+                inner.defaultDescription,
+                inner.resourceList,
+                inner.offlineAllowed,
+                inner.desktopShortcut) );
+        } else if ("resources".equals(name)) {
+            Scope inner = new Scope();
+            readChildren(element, inner);
+            scope.resources.add( new Resources(
+                getAttribute(element, "os"),
+                getAttribute(element, "arch"),
+                getAttribute(element, "locale"),
+                inner.resourceList,
+                inner.javaRuntimes,
+                inner.properties) );
+        } else if ("java".equals(name) || "j2se".equals(name)) {
+            // keep document order although nested runtimes finish first
+            int position = javaRuntimes.size();
+            javaRuntimes.add(null);
+            Scope inner = new Scope();
+            readChildren(element, inner);
+            JavaRuntime runtime = new JavaRuntime(name,
+                getAttribute(element, "version"),
+                getAttribute(element, "href"),
+                getAttribute(element, "java-vm-args"),
+                getAttribute(element, "initial-heap-size"),
+                getAttribute(element, "max-heap-size"),
+                inner.resources);
+            javaRuntimes.set(position, runtime);
+            scope.javaRuntimes.add(runtime);
+        } else if ("jar".equals(name) || "nativelib".equals(name)
+                || "extension".equals(name) || "icon".equals(name)
+                || "homepage".equals(name) || "help".equals(name)) {
+            Resource resource = new Resource(name, getAttributes(element),
+                getAttribute(parent, "os"),
+                getAttribute(parent, "arch"),
+                getAttribute(parent, "locale"),
+                getAttribute(parent, "platform"));
+            List<Resource> list = resourcesByElement.get(name);
+            if (list==null) {
+                list = new ArrayList<Resource>();
+                resourcesByElement.put(name, list);
+            }
+            list.add(resource);
+            scope.resourceList.add(resource);
+        } else if ("property".equals(name)) {
+            Property property = new Property(
+                getAttribute(element, "name"),
+                getAttribute(element, "value"));
+            properties.add(property);
+            scope.properties.add(property);
+        } else if ("description".equals(name)) {
+            String text = element.getTextContent().trim();
+            String kind = getAttribute(element, "kind");
+            if (kind==null) {
+                if (scope.defaultDescription==null) {
+                    scope.defaultDescription = text;
+                }
+                if (defaultDescription==null) {
+                    defaultDescription = text;
+                }
+            } else {
+                kind = kind.toLowerCase(Locale.ENGLISH);
+                if (!scope.descriptions.containsKey(kind)) {
+                    scope.descriptions.put(kind, text);
+                }
+                if (!descriptions.containsKey(kind)) {
+                    descriptions.put(kind, text);
+                }
+            }
+        } else if ("title".equals(name)) {
+            if (scope.title==null) {
+                scope.title = element.getTextContent().trim();
+            }
+        } else if ("vendor".equals(name)) {
+            if (scope.vendor==null) {
+                scope.vendor = element.getTextContent().trim();
+            }
+        } else if ("offline-allowed".equals(name)) {
+            scope.offlineAllowed = true;
+            offlineAllowed = true;
+        } else if ("desktop".equals(name)) {
+            scope.desktopShortcut = true;
+            desktopShortcut = true;
+        } else if ("all-permissions".equals(name)) {
+            allPermissions = true;
+        } else if ("j2ee-application-client-permissions".equals(name)) {
+            j2eePermissions = true;
+        } else {
+            // security, shortcut and the like only hold the above
+            readChildren(element, scope);
+        }
+    }
+
+    private static String getAttribute(Element element, String name) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : null;
+    }
+
+    private static Map<String, String> getAttributes(Element element) {
+        NamedNodeMap attributes = element.getAttributes();
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int ii=0; ii<attributes.getLength(); ii++) {
+            Node attribute = attributes.item(ii);
+            map.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
+        return map;
+    }
+}
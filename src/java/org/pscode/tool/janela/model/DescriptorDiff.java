@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/** How a descriptor changed between two of its models: the jar,
+nativelib, extension, icon, homepage, help, java and j2se elements added
+and removed, and whether the codebase, href or security changed, which
+the checks of every element depend on.  An element that changed shows as
+removed in its old form and added in its new one. */
+public final class DescriptorDiff {
+
+    /** The resource elements, in the order the rules check them. */
+    private static final List<String> RESOURCE_ELEMENTS = Collections.unmodifiableList(
+        Arrays.asList("jar", "nativelib", "extension", "icon", "help", "homepage"));
+
+    private final boolean contextChanged;
+    private final List<Resource> addedResources;
+    private final List<Resource> removedResources;
+    private final List<JavaRuntime> addedJavaRuntimes;
+    private final List<JavaRuntime> removedJavaRuntimes;
+
+    private DescriptorDiff(boolean contextChanged,
+            List<Resource> addedResources, List<Resource> removedResources,
+            List<JavaRuntime> addedJavaRuntimes, List<JavaRuntime> removedJavaRuntimes) {
+        this.contextChanged = contextChanged;
+        this.addedResources = Collections.unmodifiableList(addedResources);
+        this.removedResources = Collections.unmodifiableList(removedResources);
+        this.addedJavaRuntimes = Collections.unmodifiableList(addedJavaRuntimes);
+        this.removedJavaRuntimes = Collections.unmodifiableList(removedJavaRuntimes);
+    }
+
+    /** @param before the older model, or null if there is none, in which
+    case every element counts as added.
+    @param after the newer model. */
+    public static DescriptorDiff between(JNLPDescriptor before, JNLPDescriptor after) {
+        List<Resource> oldResources = before == null
+            ? Collections.<Resource>emptyList()
+            : getAllResources(before);
+        List<JavaRuntime> oldRuntimes = before == null
+            ? Collections.<JavaRuntime>emptyList()
+            : before.getJavaRuntimes();
+        List<Resource> newResources = getAllResources(after);
+        List<JavaRuntime> newRuntimes = after.getJavaRuntimes();
+        return new DescriptorDiff(
+            before == null || isContextChanged(before, after),
+            subtract(newResources, oldResources),
+            subtract(oldResources, newResources),
+            subtract(newRuntimes, oldRuntimes),
+            subtract(oldRuntimes, newRuntimes));
+    }
+
+    /** @return every jar, nativelib, extension, icon, help and homepage
+    element of <code>descriptor</code>, in that order. */
+    public static List<Resource> getAllResources(JNLPDescriptor descriptor) {
+        List<Resource> all = new ArrayList<Resource>();
+        for (String kind : RESOURCE_ELEMENTS) {
+            all.addAll( descriptor.getResources(kind) );
+        }
+        return all;
+    }
+
+    private static boolean isContextChanged(JNLPDescriptor before, JNLPDescriptor after) {
+        Security oldSecurity = before.getSecurity();
+        Security newSecurity = after.getSecurity();
+        return !Objects.equals(before.getCodebase(), after.getCodebase())
+            || !Objects.equals(before.getHref(), after.getHref())
+            || oldSecurity.isAllPermissions()!=newSecurity.isAllPermissions()
+            || oldSecurity.isJ2eeApplicationClientPermissions()
+                !=newSecurity.isJ2eeApplicationClientPermissions();
+    }
+
+    /** @return the elements of <code>from</code> not matched by one of
+    <code>minus</code>, counting duplicates. */
+    private static <T> List<T> subtract(List<T> from, List<T> minus) {
+        Map<T, Integer> counts = new HashMap<T, Integer>();
+        for (T element : minus) {
+            Integer count = counts.get(element);
+            counts.put(element, count == null ? 1 : count + 1);
+        }
+        List<T> result = new ArrayList<T>();
+        for (T element : from) {
+            Integer count = counts.get(element);
+            if (count==null || count==0) {
+                result.add(element);
+            } else {
+                counts.put(element, count - 1);
+            }
+        }
+        return result;
+    }
+
+    /** @return true if the codebase, href or security changed. */
+    public boolean isContextChanged() {
+        return contextChanged;
+    }
+
+    public List<Resource> getAddedResources() {
+        return addedResources;
+    }
+
+    public List<Resource> getRemovedResources() {
+        return removedResources;
+    }
+
+    public List<JavaRuntime> getAddedJavaRuntimes() {
+        return addedJavaRuntimes;
+    }
+
+    public List<JavaRuntime> getRemovedJavaRuntimes() {
+        return removedJavaRuntimes;
+    }
+
+    /** @return how many elements were added or removed. */
+    public int getChangeCount() {
+        return addedResources.size() + removedResources.size()
+            + addedJavaRuntimes.size() + removedJavaRuntimes.size();
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/** Reads a descriptor from SAX events and hands every jar, nativelib,
+extension, icon, homepage, help, java and j2se element to a listener as
+soon as its start tag has been read.  Only the attributes of the elements
+still open are kept, so a descriptor of any length is read in the memory
+of its deepest element. */
+public class DescriptorStreamHandler extends DefaultHandler {
+
+    /** Told about the elements as they are read, in document order. */
+    public interface Listener {
+
+        /** The root element, with its attributes or null. */
+        void descriptor(String spec, String codebase, String href);
+
+        /** The end of the security element. */
+        void security(Security security);
+
+        /** A jar, nativelib, extension, icon, homepage or help element. */
+        void resource(Resource resource);
+
+        /** A java or j2se element.  The resources nested in it are not
+        part of it, they are read one by one after it. */
+        void javaRuntime(JavaRuntime runtime);
+    }
+
+    private final Listener listener;
+    private final List<Map<String, String>> open = new ArrayList<Map<String, String>>();
+    private boolean allPermissions;
+    private boolean j2eePermissions;
+
+    public DescriptorStreamHandler(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) {
+        String name = localName == null || localName.length()==0 ? qName : localName;
+        Map<String, String> attributes = getAttributes(atts);
+        Map<String, String> parent = open.isEmpty()
+            ? Collections.<String, String>emptyMap()
+            : open.get(open.size() - 1);
+        open.add(attributes);
+
+        if (open.size()==1) {
+            listener.descriptor(attributes.get("spec"),
+                attributes.get("codebase"),
+                attributes.get("href"));
+        } else if ("java".equals(name) || "j2se".equals(name)) {
+            listener.javaRuntime( new JavaRuntime(name,
+                attributes.get("version"),
+                attributes.get("href"),
+                attributes.get("java-vm-args"),
+                attributes.get("initial-heap-size"),
+                attributes.get("max-heap-size"),
+                Collections.<Resources>emptyList()) );
+        } else if ("jar".equals(name) || "nativelib".equals(name)
+                || "extension".equals(name) || "icon".equals(name)
+                || "homepage".equals(name) || "help".equals(name)) {
+            listener.resource( new Resource(name, attributes,
+                parent.get("os"),
+                parent.get("arch"),
+                parent.get("locale"),
+                parent.get("platform")) );
+        } else if ("all-permissions".equals(name)) {
+            allPermissions = true;
+        } else if ("j2ee-application-client-permissions".equals(name)) {
+            j2eePermissions = true;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        String name = localName == null || localName.length()==0 ? qName : localName;
+        open.remove(open.size() - 1);
+        if ("security".equals(name)) {
+            listener.security( new Security(allPermissions, j2eePermissions) );
+        }
+    }
+
+    private static Map<String, String> getAttributes(Attributes atts) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int ii=0; ii<atts.getLength(); ii++) {
+            String name = atts.getQName(ii);
+            if (name==null || name.length()==0) {
+                name = atts.getLocalName(ii);
+            }
+            map.put(name, atts.getValue(ii));
+        }
+        return map;
+    }
+}
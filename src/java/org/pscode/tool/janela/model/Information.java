@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** An information element: title, vendor, descriptions and icons for
+one os, arch, platform and locale (each null if not restricted). */
+public final class Information {
+
+    private final String os;
+    private final String arch;
+    private final String platform;
+    private final String locale;
+    private final String title;
+    private final String vendor;
+    private final Map<String, String> descriptions;
+    private final String defaultDescription;
+    private final List<Resource> resources;
+    private final boolean offlineAllowed;
+    private final boolean desktopShortcut;
+
+    Information(String os, String arch, String platform, String locale,
+            String title, String vendor,
+            Map<String, String> descriptions, String defaultDescription,
+            List<Resource> resources,
+            boolean offlineAllowed, boolean desktopShortcut) {
+        this.os = os;
+        this.arch = arch;
+        this.platform = platform;
+        this.locale = locale;
+        this.title = title;
+        this.vendor = vendor;
+        this.descriptions = Collections.unmodifiableMap(descriptions);
+        this.defaultDescription = defaultDescription;
+        this.resources = Collections.unmodifiableList(resources);
+        this.offlineAllowed = offlineAllowed;
+        this.desktopShortcut = desktopShortcut;
+    }
+
+    public String getOs() {
+        return os;
+    }
+
+    public String getArch() {
+        return arch;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getVendor() {
+        return vendor;
+    }
+
+    /** @return the trimmed descriptions by lower case kind. */
+    public Map<String, String> getDescriptions() {
+        return descriptions;
+    }
+
+    /** @return the trimmed description without a kind, or null. */
+    public String getDefaultDescription() {
+        return defaultDescription;
+    }
+
+    /** @return the icon, homepage and help elements, in document order. */
+    public List<Resource> getResources() {
+        return resources;
+    }
+
+    public boolean isOfflineAllowed() {
+        return offlineAllowed;
+    }
+
+    public boolean hasDesktopShortcut() {
+        return desktopShortcut;
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+
+/** An immutable view of a parsed descriptor.  It is built in one walk of
+the document, after which the document is no longer needed, and can be
+read by any number of threads at once.
+<p>
+Besides the element structure, the resources, runtimes and properties
+are available across the whole descriptor in document order, which is
+how most checks want them. */
+public final class JNLPDescriptor {
+
+    private final String spec;
+    private final String version;
+    private final String codebase;
+    private final String href;
+    private final String xmlEncoding;
+    private final List<Information> information;
+    private final Security security;
+    private final List<Resources> resources;
+
+    private final Map<String, List<Resource>> resourcesByElement;
+    private final List<JavaRuntime> javaRuntimes;
+    private final List<Property> properties;
+    private final Map<String, String> descriptions;
+    private final String defaultDescription;
+    private final boolean offlineAllowed;
+    private final boolean desktopShortcut;
+
+    JNLPDescriptor(String spec, String version, String codebase, String href,
+            String xmlEncoding, List<Information> information, Security security,
+            List<Resources> resources,
+            Map<String, List<Resource>> resourcesByElement,
+            List<JavaRuntime> javaRuntimes, List<Property> properties,
+            Map<String, String> descriptions, String defaultDescription,
+            boolean offlineAllowed, boolean desktopShortcut) {
+        this.spec = spec;
+        this.version = version;
+        this.codebase = codebase;
+        this.href = href;
+        this.xmlEncoding = xmlEncoding;
+        this.information = Collections.unmodifiableList(information);
+        this.security = security;
+        this.resources = Collections.unmodifiableList(resources);
+        this.resourcesByElement = Collections.unmodifiableMap(resourcesByElement);
+        this.javaRuntimes = Collections.unmodifiableList(javaRuntimes);
+        this.properties = Collections.unmodifiableList(properties);
+        this.descriptions = Collections.unmodifiableMap(descriptions);
+        this.defaultDescription = defaultDescription;
+        this.offlineAllowed = offlineAllowed;
+        this.desktopShortcut = desktopShortcut;
+    }
+
+    /** @return the model of <code>document</code>. */
+    public static JNLPDescriptor read(Document document) {
+        return new DescriptorBuilder().build(document);
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /** @return the codebase attribute as written, or null. */
+    public String getCodebase() {
+        return codebase;
+    }
+
+    /** @return the href attribute as written, or null. */
+    public String getHref() {
+        return href;
+    }
+
+    /** @return the encoding declared by the XML declaration, or null. */
+    public String getXmlEncoding() {
+        return xmlEncoding;
+    }
+
+    public List<Information> getInformation() {
+        return information;
+    }
+
+    /** @return the permissions asked for, none if there is no security
+    element. */
+    public Security getSecurity() {
+        return security;
+    }
+
+    /** @return the top level resources elements. */
+    public List<Resources> getResources() {
+        return resources;
+    }
+
+    /** @return every resource with the element name, e.g. jar or icon,
+    wherever it appears, in document order. */
+    public List<Resource> getResources(String elementName) {
+        List<Resource> list = resourcesByElement.get(elementName);
+        return list == null ? Collections.<Resource>emptyList() : list;
+    }
+
+    /** @return every java and j2se element, nested ones included, in
+    document order. */
+    public List<JavaRuntime> getJavaRuntimes() {
+        return javaRuntimes;
+    }
+
+    /** @return every property element, in document order. */
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /** @return the first description of the kind (ignoring case), or null. */
+    public String getDescription(String kind) {
+        return descriptions.get(kind.toLowerCase(Locale.ENGLISH));
+    }
+
+    /** @return the first description without a kind, or null. */
+    public String getDefaultDescription() {
+        return defaultDescription;
+    }
+
+    public boolean isOfflineAllowed() {
+        return offlineAllowed;
+    }
+
+    public boolean hasDesktopShortcut() {
+        return desktopShortcut;
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/** A java or j2se element, with the resources nested in it.  Runtimes
+are equal if their attributes are; the resources nested in them are
+elements of their own. */
+public final class JavaRuntime {
+
+    private final String elementName;
+    private final String version;
+    private final String href;
+    private final String javaVmArgs;
+    private final String initialHeapSize;
+    private final String maxHeapSize;
+    private final List<Resources> resources;
+
+    JavaRuntime(String elementName, String version, String href,
+            String javaVmArgs, String initialHeapSize, String maxHeapSize,
+            List<Resources> resources) {
+        this.elementName = elementName;
+        this.version = version;
+        this.href = href;
+        this.javaVmArgs = javaVmArgs;
+        this.initialHeapSize = initialHeapSize;
+        this.maxHeapSize = maxHeapSize;
+        this.resources = Collections.unmodifiableList(resources);
+    }
+
+    /** @return java or j2se. */
+    public String getElementName() {
+        return elementName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHref() {
+        return href;
+    }
+
+    public String getJavaVmArgs() {
+        return javaVmArgs;
+    }
+
+    public String getInitialHeapSize() {
+        return initialHeapSize;
+    }
+
+    public String getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    public List<Resources> getResources() {
+        return resources;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof JavaRuntime)) {
+            return false;
+        }
+        JavaRuntime other = (JavaRuntime)obj;
+        return elementName.equals(other.elementName)
+            && Objects.equals(version, other.version)
+            && Objects.equals(href, other.href)
+            && Objects.equals(javaVmArgs, other.javaVmArgs)
+            && Objects.equals(initialHeapSize, other.initialHeapSize)
+            && Objects.equals(maxHeapSize, other.maxHeapSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(elementName, version, href, javaVmArgs,
+            initialHeapSize, maxHeapSize);
+    }
+}
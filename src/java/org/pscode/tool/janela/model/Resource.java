@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/** A downloadable resource of a descriptor: a jar, nativelib, extension,
+icon, homepage or help element.  Attribute values are kept as written,
+including those defaulted by the schema, and are null when absent.
+Resources are equal if they are the same element, with the same
+attributes, in an enclosing element with the same attributes. */
+public final class Resource {
+
+    private final String elementName;
+    private final Map<String, String> attributes;
+    private final String os;
+    private final String arch;
+    private final String locale;
+    private final String platform;
+
+    Resource(String elementName, Map<String, String> attributes,
+            String os, String arch, String locale, String platform) {
+        this.elementName = elementName;
+        this.attributes = Collections.unmodifiableMap(attributes);
+        this.os = os;
+        this.arch = arch;
+        this.locale = locale;
+        this.platform = platform;
+    }
+
+    /** @return jar, nativelib, extension, icon, homepage or help. */
+    public String getElementName() {
+        return elementName;
+    }
+
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public String getHref() {
+        return attributes.get("href");
+    }
+
+    public String getVersion() {
+        return attributes.get("version");
+    }
+
+    public String getSize() {
+        return attributes.get("size");
+    }
+
+    public String getDownload() {
+        return attributes.get("download");
+    }
+
+    public String getMain() {
+        return attributes.get("main");
+    }
+
+    public String getPart() {
+        return attributes.get("part");
+    }
+
+    public String getWidth() {
+        return attributes.get("width");
+    }
+
+    public String getHeight() {
+        return attributes.get("height");
+    }
+
+    /** @return the os of the enclosing resources or information element. */
+    public String getOs() {
+        return os;
+    }
+
+    /** @return the arch of the enclosing resources or information element. */
+    public String getArch() {
+        return arch;
+    }
+
+    /** @return the locale of the enclosing resources or information element. */
+    public String getLocale() {
+        return locale;
+    }
+
+    /** @return the platform of the enclosing information element. */
+    public String getPlatform() {
+        return platform;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Resource)) {
+            return false;
+        }
+        Resource other = (Resource)obj;
+        return elementName.equals(other.elementName)
+            && attributes.equals(other.attributes)
+            && Objects.equals(os, other.os)
+            && Objects.equals(arch, other.arch)
+            && Objects.equals(locale, other.locale)
+            && Objects.equals(platform, other.platform);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(elementName, attributes, os, arch, locale, platform);
+    }
+
+    @Override
+    public String toString() {
+        return "<" + elementName + " href='" + getHref() + "'>";
+    }
+}
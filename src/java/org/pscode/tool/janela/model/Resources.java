@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/** A resources element: the jars, nativelibs, extensions, runtimes and
+properties for one os, arch and locale (each null if not restricted). */
+public final class Resources {
+
+    private final String os;
+    private final String arch;
+    private final String locale;
+    private final List<Resource> resources;
+    private final List<JavaRuntime> javaRuntimes;
+    private final List<Property> properties;
+
+    Resources(String os, String arch, String locale,
+            List<Resource> resources, List<JavaRuntime> javaRuntimes,
+            List<Property> properties) {
+        this.os = os;
+        this.arch = arch;
+        this.locale = locale;
+        this.resources = Collections.unmodifiableList(resources);
+        this.javaRuntimes = Collections.unmodifiableList(javaRuntimes);
+        this.properties = Collections.unmodifiableList(properties);
+    }
+
+    public String getOs() {
+        return os;
+    }
+
+    public String getArch() {
+        return arch;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    /** @return the jar, nativelib and extension elements, in document order. */
+    public List<Resource> getResources() {
+        return resources;
+    }
+
+    public List<JavaRuntime> getJavaRuntimes() {
+        return javaRuntimes;
+    }
+
+    public List<Property> getProperties() {
+        return properties;
+    }
+}
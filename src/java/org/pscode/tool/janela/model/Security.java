@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.model;
+
+/** The permissions a descriptor asks for. */
+public final class Security {
+
+    private final boolean allPermissions;
+    private final boolean j2eeApplicationClientPermissions;
+
+    Security(boolean allPermissions, boolean j2eeApplicationClientPermissions) {
+        this.allPermissions = allPermissions;
+        this.j2eeApplicationClientPermissions = j2eeApplicationClientPermissions;
+    }
+
+    public boolean isAllPermissions() {
+        return allPermissions;
+    }
+
+    public boolean isJ2eeApplicationClientPermissions() {
+        return j2eeApplicationClientPermissions;
+    }
+}
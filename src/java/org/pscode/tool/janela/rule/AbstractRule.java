@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Helpers shared by the built in rules. */
+public abstract class AbstractRule implements Rule {
+
+    private static final boolean DEBUG = false;
+
+    private final Input input;
+    private final Cost cost;
+
+    protected AbstractRule(Input input, Cost cost) {
+        this.input = input;
+        this.cost = cost;
+    }
+
+    public Input getInput() {
+        return input;
+    }
+
+    public Cost getCost() {
+        return cost;
+    }
+
+    protected void addException(Exception e, List<LaunchError> errors) {
+        errors.add(
+            new LaunchError(
+            e.getMessage(),
+            e,
+            ErrorLevel.ERROR) );
+    }
+
+    protected void debug(Object obj) {
+        if (DEBUG)
+            System.out.println(obj);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** The codebase and href of a descriptor, resolved once per analysis,
+and the URLs of its resources resolved against them. */
+public final class CodeBase {
+
+    private final String attribute;
+    private final URL url;
+    private final MalformedURLException malformed;
+    private final URI uri;
+    private final URISyntaxException uriFailure;
+    private final String href;
+
+    /** Resolved hrefs, each a URL or the MalformedURLException of it, or
+    null if they are not remembered. */
+    private final ConcurrentMap<String, Object> resolved;
+
+    /** @param page where the descriptor was fetched from.
+    @param codebase the codebase attribute, or null.
+    @param href the href attribute, or null. */
+    CodeBase(URL page, String codebase, String href) {
+        this(page, codebase, href, true);
+    }
+
+    /** @param remember false to resolve every href afresh, so the memory
+    used does not grow with the hrefs of a streamed descriptor. */
+    CodeBase(URL page, String codebase, String href, boolean remember) {
+        this.resolved = remember ? new ConcurrentHashMap<String, Object>() : null;
+        this.attribute = codebase;
+        URL codebaseUrl;
+        MalformedURLException codebaseFailure = null;
+        try {
+            if (codebase==null) {
+                codebaseUrl = new URL(page, ".");
+            } else {
+                codebaseUrl = new URL(codebase);
+            }
+        } catch(MalformedURLException murle) {
+            codebaseFailure = murle;
+            codebaseUrl = page;
+        }
+        this.url = codebaseUrl;
+        this.malformed = codebaseFailure;
+
+        URI codebaseUri = null;
+        URISyntaxException codebaseUriFailure = null;
+        try {
+            codebaseUri = url.toURI();
+        } catch(URISyntaxException use) {
+            codebaseUriFailure = use;
+        }
+        this.uri = codebaseUri;
+        this.uriFailure = codebaseUriFailure;
+
+        this.href = href == null ? page.getFile() : href;
+    }
+
+    /** @return the codebase attribute as written, or null. */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /** @return the codebase as a URL, the directory of the descriptor if
+    there is none, or the descriptor itself if it is malformed. */
+    public URL getURL() {
+        return url;
+    }
+
+    /** @return true if the codebase attribute is not a URL. */
+    public boolean isMalformed() {
+        return malformed!=null;
+    }
+
+    /** @return why the codebase attribute is not a URL, or null. */
+    public MalformedURLException getMalformedURLException() {
+        return malformed;
+    }
+
+    /** @return the codebase as a URI. */
+    public URI getURI() throws URISyntaxException {
+        if (uriFailure!=null) {
+            throw new URISyntaxException(uriFailure.getInput(), uriFailure.getReason(),
+                uriFailure.getIndex());
+        }
+        return uri;
+    }
+
+    /** @return the href attribute, or the file of the descriptor if there
+    is none. */
+    public String getHref() {
+        return href;
+    }
+
+    /** @return the URL of <code>resourceHref</code>, relative to the
+    codebase. */
+    public URL resolve(String resourceHref) throws MalformedURLException {
+        if (resourceHref==null || resolved==null) {
+            // not worth remembering, and not a key of the map
+            return new URL(url, resourceHref);
+        }
+        Object result = resolved.get(resourceHref);
+        if (result==null) {
+            try {
+                result = new URL(url, resourceHref);
+            } catch(MalformedURLException murle) {
+                result = murle;
+            }
+            resolved.putIfAbsent(resourceHref, result);
+        }
+        if (result instanceof MalformedURLException) {
+            throw new MalformedURLException(((MalformedURLException)result).getMessage());
+        }
+        return (URL)result;
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+}
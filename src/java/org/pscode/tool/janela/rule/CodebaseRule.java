@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Checks that a codebase is given, and that codebase and href lead back
+to where the descriptor was fetched from. */
+public class CodebaseRule extends AbstractRule {
+
+    public CodebaseRule() {
+        super(Input.DOCUMENT, Cost.LOW);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        checkCodebaseWellFormed(context, errors);
+        checkCodebasePresent(context, errors);
+        checkCodebaseAndHrefEqualsLocation(context, errors);
+    }
+
+    /** The one report of a malformed codebase, the other rules quietly
+    use the location of the descriptor instead. */
+    private void checkCodebaseWellFormed(RuleContext context, List<LaunchError> errors) {
+        CodeBase codeBase = context.getCodeBase();
+        if (codeBase.isMalformed()) {
+            errors.add(
+                new LaunchError(
+                    "Codebase '" +
+                    codeBase.getAttribute() +
+                    "' is a malformed URL!  Defaulting to " +
+                    context.getURL(),
+                    codeBase.getMalformedURLException(),
+                    ErrorLevel.ERROR
+                    ));
+        }
+    }
+
+    private void checkCodebasePresent(RuleContext context, List<LaunchError> errors) {
+        String codebase = context.getDescriptor().getCodebase();
+        if (codebase==null) {
+            errors.add(
+                new LaunchError(
+                    "Codebase not specified.  Defaulting to " +
+                    context.getCodeBase(),
+                    (Exception)null,
+                    ErrorLevel.WARNING
+                    ));
+        } else {
+            debug("Codebase: " + codebase );
+        }
+    }
+
+    private void checkCodebaseAndHrefEqualsLocation(RuleContext context, List<LaunchError> errors) {
+        URL page = context.getURL();
+        try {
+            URL url = context.getCodeBase().resolve(context.getCodeBase().getHref());
+            if (!url.equals(page)) {
+                errors.add(
+                    new LaunchError(
+                        "Codebase + href '" +
+                        url +
+                        "' is not equal to actual location of '" +
+                        page +
+                        "'.",
+                        (Exception)null,
+                        ErrorLevel.WARNING
+                        ));
+            }
+        } catch(MalformedURLException murle) {
+            errors.add(
+                new LaunchError(
+                    "Codebase + href '" +
+                    context.getCodeBase() +
+                    context.getCodeBase().getHref() +
+                    "' is a malformed URL!",
+                    (Exception)null,
+                    ErrorLevel.ERROR
+                    ));
+        }
+    }
+}
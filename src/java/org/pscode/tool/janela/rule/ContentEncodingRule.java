@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Compares the encoding the server reports with the one the XML
+declaration names. */
+public class ContentEncodingRule extends AbstractRule {
+
+    public ContentEncodingRule() {
+        super(Input.DOCUMENT, Cost.LOW);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        try {
+            String declaredEncoding = context.getDescriptor().getXmlEncoding();
+            debug("** encoding: " + declaredEncoding);
+
+            String encoding = context.getSnapshot().getContentEncoding();
+            debug("Reported encoding " + encoding);
+            if (encoding==null) {
+              if (declaredEncoding != null)
+                errors.add(
+                    new LaunchError(
+                        "XML encoding not known, but declared as " +
+                        declaredEncoding,
+                        (Exception)null,
+                        ErrorLevel.WARNING
+                        ));
+            } else {
+                if (!encoding.toLowerCase().equals(declaredEncoding)) {
+                    errors.add(
+                        new LaunchError(
+                            "Declared encoding of " +
+                            declaredEncoding +
+                            " does not match actual encoding of " +
+                            encoding,
+                            (Exception)null,
+                            ErrorLevel.WARNING
+                            ));
+                }
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+            addException(e, errors);
+        }
+    }
+}
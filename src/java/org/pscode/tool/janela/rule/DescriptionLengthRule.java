@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.model.JNLPDescriptor;
+
+/** Checks that the shorter kinds of description are no longer than the
+longer ones they stand in for. */
+public class DescriptionLengthRule extends AbstractRule {
+
+    public DescriptionLengthRule() {
+        super(Input.DOCUMENT, Cost.LOW);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        JNLPDescriptor descriptor = context.getDescriptor();
+        debug("tooltip: " + descriptor.getDescription("tooltip"));
+        debug("short: " + descriptor.getDescription("short"));
+        debug("one-line: " + descriptor.getDescription("one-line"));
+        debug("default-description: " + descriptor.getDefaultDescription());
+
+        ArrayList<String> desc = new ArrayList<String>();
+        boolean defaultDesc = descriptor.getDefaultDescription() != null;
+        String type;
+        type = "tooltip";
+        if ( descriptor.getDescription(type)!=null ) {
+            desc.add( type );
+        }
+        type = "short";
+        if ( descriptor.getDescription(type)!=null ) {
+            desc.add( type );
+        }
+        type = "one-line";
+        if ( descriptor.getDescription(type)!=null ) {
+            desc.add( type );
+        }
+
+        // check the short description, against the one-line or default.
+        if ( descriptor.getDescription("short")!=null ) {
+            if ( descriptor.getDescription("one-line")!=null ) {
+                checkOneDescriptionAgainstAnother(descriptor, errors, "short", "one-line");
+            } else if ( defaultDesc ) {
+                checkOneDescriptionAgainstAnother(descriptor, errors, "short", null);
+            }
+        }
+
+        if ( descriptor.getDescription("tooltip")!=null ) {
+            if ( descriptor.getDescription("short")!=null ) {
+                checkOneDescriptionAgainstAnother(descriptor, errors, "tooltip", "short");
+            } else if ( descriptor.getDescription("one-line")!=null ) {
+                checkOneDescriptionAgainstAnother(descriptor, errors, "tooltip", "one-line");
+            } else if ( defaultDesc ) {
+                checkOneDescriptionAgainstAnother(descriptor, errors, "tooltip", null);
+            }
+        }
+    }
+
+    private void checkOneDescriptionAgainstAnother(
+        JNLPDescriptor descriptor,
+        List<LaunchError> errors,
+        String smaller,
+        String larger) {
+
+        String shortDesc = descriptor.getDescription(smaller);
+        String longDesc = null;
+        if ( larger==null ) {
+            longDesc = descriptor.getDefaultDescription();
+            larger = "default";
+        } else {
+            longDesc = descriptor.getDescription(larger);
+        }
+        if (!(longDesc.length()>=shortDesc.length())) {
+            LaunchError launchError = new LaunchError(
+                "'" +
+                smaller +
+                "' description is longer than '" +
+                larger +
+                "' description.",
+                (Exception)null,
+                ErrorLevel.WARNING);
+            errors.add(launchError);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+
+/** Warns about desktop shortcuts, which older runtimes handled badly. */
+public class DesktopIconRule extends AbstractRule {
+
+    public DesktopIconRule() {
+        super(Input.DOCUMENT, Cost.LOW);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        if (context.getDescriptor().hasDesktopShortcut()) {
+            errors.add(
+                new LaunchError(
+                    "Desktop icons were subject to bug nnnn in earlier J2SE versions",
+                    (Exception)null,
+                    ErrorLevel.WARNING
+                    ));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pscode.tool.janela.model.Security;
+
+/** What the element rules of one streamed descriptor share: its codebase
+and what has been read of it so far. */
+public class ElementContext {
+
+    private final URL page;
+    private final CodeBase codeBase;
+    private final List<URL> extensions = new ArrayList<URL>();
+    private Security security;
+
+    /** @param page where the descriptor is read from.
+    @param codebase the codebase attribute, or null.
+    @param href the href attribute, or null. */
+    public ElementContext(URL page, String codebase, String href) {
+        this.page = page;
+        // each href is resolved once or twice, as its element is read
+        this.codeBase = new CodeBase(page, codebase, href, false);
+    }
+
+    /** @return where the descriptor is read from. */
+    public URL getURL() {
+        return page;
+    }
+
+    public CodeBase getCodeBase() {
+        return codeBase;
+    }
+
+    public void setSecurity(Security security) {
+        this.security = security;
+    }
+
+    /** @return the permissions asked for, or null if the security element
+    has not been read (yet). */
+    public Security getSecurity() {
+        return security;
+    }
+
+    /** Record an extension the descriptor refers to. */
+    public void addExtension(URL extension) {
+        extensions.add(extension);
+    }
+
+    /** @return the extensions recorded so far, in the order they were. */
+    public List<URL> getExtensions() {
+        return new ArrayList<URL>(extensions);
+    }
+}
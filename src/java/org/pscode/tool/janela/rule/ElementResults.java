@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.model.DescriptorDiff;
+import org.pscode.tool.janela.model.JNLPDescriptor;
+
+/** What the rules found with single elements of a descriptor, kept from
+one analysis of it to the next so that the elements that did not change
+are not checked again.  Before the rules run, {@link #update(JNLPDescriptor)}
+compares the new model with the one before: the results of elements no
+longer there are dropped, and all results if the codebase, href or
+security changed.  One instance serves the analyses of one descriptor,
+one analysis at a time, all made the same way, online or offline. */
+public class ElementResults {
+
+    /** The problems a rule found with one element. */
+    public static final class Result {
+
+        private final List<LaunchError> errors;
+        private final URL extension;
+
+        Result(List<LaunchError> errors, URL extension) {
+            this.errors = Collections.unmodifiableList(new ArrayList<LaunchError>(errors));
+            this.extension = extension;
+        }
+
+        public List<LaunchError> getErrors() {
+            return errors;
+        }
+
+        /** @return the extension the element refers to, or null. */
+        public URL getExtension() {
+            return extension;
+        }
+    }
+
+    private final ConcurrentMap<Key, Result> results = new ConcurrentHashMap<Key, Result>();
+    private JNLPDescriptor descriptor;
+
+    /** Keep only the results still valid for <code>newDescriptor</code>.
+    @return how it differs from the model given before. */
+    public synchronized DescriptorDiff update(JNLPDescriptor newDescriptor) {
+        DescriptorDiff diff = DescriptorDiff.between(descriptor, newDescriptor);
+        if (diff.isContextChanged()) {
+            results.clear();
+        } else if (diff.getChangeCount()>0) {
+            Set<Object> elements = new HashSet<Object>();
+            elements.addAll( DescriptorDiff.getAllResources(newDescriptor) );
+            elements.addAll( newDescriptor.getJavaRuntimes() );
+            for (Iterator<Key> it = results.keySet().iterator(); it.hasNext(); ) {
+                if (!elements.contains(it.next().element)) {
+                    it.remove();
+                }
+            }
+        }
+        descriptor = newDescriptor;
+        return diff;
+    }
+
+    /** @return what <code>rule</code> found with <code>element</code>
+    before, or null if it has to be checked. */
+    public Result get(Rule rule, Object element) {
+        return results.get(new Key(rule, element));
+    }
+
+    /** Remember what <code>rule</code> found with <code>element</code>.
+    @param extension the extension the element refers to, or null. */
+    public void put(Rule rule, Object element, List<LaunchError> errors, URL extension) {
+        results.put(new Key(rule, element), new Result(errors, extension));
+    }
+
+    /** Forget every result. */
+    public synchronized void clear() {
+        results.clear();
+        descriptor = null;
+    }
+
+    /** A rule, by identity, and an element, by value. */
+    private static final class Key {
+
+        final Rule rule;
+        final Object element;
+
+        Key(Rule rule, Object element) {
+            this.rule = rule;
+            this.element = element;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return rule==other.rule && element.equals(other.element);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(rule) * 31 + element.hashCode();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.model.JavaRuntime;
+import org.pscode.tool.janela.model.Resource;
+
+/** A rule that can also check a descriptor one element at a time, while
+it is streamed, without a model of the whole descriptor.  Only the
+declarations are checked this way, nothing is fetched.  The elements of
+one descriptor are checked in document order, by one thread. */
+public interface ElementRule extends Rule {
+
+    /** Check a jar, nativelib, extension, icon, homepage or help element. */
+    void checkResource(ElementContext context, Resource resource, List<LaunchError> errors);
+
+    /** Check a java or j2se element. */
+    void checkJavaRuntime(ElementContext context, JavaRuntime runtime, List<LaunchError> errors);
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.model.JavaRuntime;
+import org.pscode.tool.janela.model.Resource;
+
+/** Checks the java and j2se elements: heap size, version pattern and
+the JVM arguments a launch is allowed to pass. */
+public class JavaRuntimeRule extends AbstractRule implements ElementRule {
+
+    private final JavaVmArgsMatcher matcher;
+
+    public JavaRuntimeRule() {
+        this(JavaVmArgsMatcher.getDefault());
+    }
+
+    /** @param matcher tells the allowed JVM arguments. */
+    public JavaRuntimeRule(JavaVmArgsMatcher matcher) {
+        super(Input.DOCUMENT, Cost.LOW);
+        this.matcher = matcher;
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        ElementResults results = context.getElementResults();
+        // all java elements first, then all j2se elements
+        for (String name : new String[] {"java", "j2se"}) {
+            for (JavaRuntime runtime : context.getDescriptor().getJavaRuntimes()) {
+                if (name.equals(runtime.getElementName())) {
+                    ElementResults.Result cached = results == null
+                        ? null
+                        : results.get(this, runtime);
+                    if (cached!=null) {
+                        errors.addAll( cached.getErrors() );
+                    } else {
+                        List<LaunchError> found = new ArrayList<LaunchError>();
+                        checkJavaRuntime(runtime, found);
+                        errors.addAll( found );
+                        if (results!=null) {
+                            results.put(this, runtime, found, null);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void checkResource(ElementContext context, Resource resource, List<LaunchError> errors) {
+        // not a java element
+    }
+
+    public void checkJavaRuntime(ElementContext context, JavaRuntime runtime, List<LaunchError> errors) {
+        checkJavaRuntime(runtime, errors);
+    }
+
+    private void checkJavaRuntime(JavaRuntime runtime, List<LaunchError> errors) {
+        checkJ2seForMaxHeapSize(runtime, errors);
+        checkJ2seForSpecificVersion(runtime, errors);
+        checkJ2seForAllowedJavaVmArguments(runtime, errors);
+    }
+
+    private void checkJ2seForAllowedJavaVmArguments(JavaRuntime runtime, List<LaunchError> errors){
+      String javaVmArgs = runtime.getJavaVmArgs();
+      if (javaVmArgs != null)
+      {
+        String javaVmArgsString = javaVmArgs.trim();
+        for (String argument : javaVmArgsString.split("\\s"))
+        {
+          if (!matcher.isAllowed(argument))
+            errors.add(new LaunchError(argument + " is not allowed as java-vm-rg", null, ErrorLevel.WARNING));
+        }
+      }
+    }
+
+    private void checkJ2seForSpecificVersion(JavaRuntime runtime, List<LaunchError> errors) {
+        String versionString = runtime.getVersion();
+        if (versionString!=null) {
+            if (versionString.endsWith("*")) {
+                errors.add(
+                    new LaunchError(
+                        "Note that a java/j2se version of 'n.n*' will limit the app. to that " +
+                        " specific Java runtime, and no later.  It is often better to specify " +
+                        " version as 'n.n+'.",
+                        (Exception)null,
+                        ErrorLevel.OPTIMIZE
+                        ));
+            }
+        }
+    }
+
+    private void checkJ2seForMaxHeapSize(JavaRuntime runtime, List<LaunchError> errors) {
+        String maxHeapSizeString = runtime.getMaxHeapSize();
+        if (maxHeapSizeString!=null) {
+            String maxHeap = maxHeapSizeString.toLowerCase();
+            int multiplier = 1;
+            if (maxHeap.endsWith("k")) {
+                maxHeap = maxHeap.substring(0,maxHeap.length()-1);
+                multiplier = 1000;
+            } else if (maxHeap.endsWith("m")) {
+                maxHeap = maxHeap.substring(0,maxHeap.length()-1);
+                multiplier = 1000000;
+            }
+            int maxHeapSize = Integer.parseInt(maxHeap)*multiplier;
+            if (maxHeapSize>1000000000) {
+                errors.add(
+                    new LaunchError(
+                        "Some JWS launches have trouble with a max-heap-size>1000Meg." +
+                        "  A java/j2se element was defined, calling for " +
+                        maxHeapSizeString +
+                        " bytes of memory.",
+                        (Exception)null,
+                        ErrorLevel.WARNING
+                        ));
+            }
+        }
+    }
+}
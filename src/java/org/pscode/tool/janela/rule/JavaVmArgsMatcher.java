@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/** Tells the JVM arguments a launch may pass from those it may not.
+<p>
+The allowed arguments are read once from a list in the
+<code>vmargs</code> directory next to this class, named after the launcher
+and its version, e.g. <code>jws-6.txt</code>.  Each line holds one
+argument, and an argument ending in <code>*</code> allows every argument
+starting with it.  Exact arguments go into a hash set, the others into a
+trie, so an argument is matched in one pass over its characters however
+long the list is.  The system property <code>janela.vmargs</code> picks
+another list, so newer launchers only need a new file. */
+public final class JavaVmArgsMatcher {
+
+    public static final String DEFAULT_LIST = "jws-6";
+
+    private static JavaVmArgsMatcher defaultMatcher;
+
+    private final String name;
+    private final Set<String> exact = new HashSet<String>();
+    private final TrieNode prefixes = new TrieNode();
+
+    private JavaVmArgsMatcher(String name) {
+        this.name = name;
+    }
+
+    /** @return the matcher for the list named by the system property
+    <code>janela.vmargs</code>, or {@link #DEFAULT_LIST}. */
+    public static synchronized JavaVmArgsMatcher getDefault() {
+        if (defaultMatcher==null) {
+            String name = System.getProperty("janela.vmargs", DEFAULT_LIST);
+            try {
+                defaultMatcher = load(name);
+            } catch(IOException ioe) {
+                throw new IllegalStateException(
+                    "Can not read the JVM argument list " + name, ioe);
+            }
+        }
+        return defaultMatcher;
+    }
+
+    /** @return the matcher for the list <code>vmargs/name.txt</code>. */
+    public static JavaVmArgsMatcher load(String name) throws IOException {
+        InputStream is = JavaVmArgsMatcher.class.getResourceAsStream(
+            "vmargs/" + name + ".txt");
+        if (is==null) {
+            throw new IOException("No JVM argument list " + name);
+        }
+        try {
+            JavaVmArgsMatcher matcher = new JavaVmArgsMatcher(name);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) !=null) {
+                line = line.trim();
+                if (line.length()>0 && !line.startsWith("#")) {
+                    matcher.add(line);
+                }
+            }
+            return matcher;
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    private void add(String argument) {
+        if (!argument.endsWith("*")) {
+            exact.add(argument);
+            return;
+        }
+        TrieNode node = prefixes;
+        for (int ii=0; ii<argument.length() - 1; ii++) {
+            node = node.getOrAddChild(argument.charAt(ii));
+        }
+        node.terminal = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return true if <code>argument</code> is listed, or starts with a
+    listed prefix. */
+    public boolean isAllowed(String argument) {
+        if (exact.contains(argument)) {
+            return true;
+        }
+        TrieNode node = prefixes;
+        for (int ii=0; ii<argument.length(); ii++) {
+            if (node.terminal) {
+                return true;
+            }
+            node = node.getChild(argument.charAt(ii));
+            if (node==null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    private static class TrieNode {
+        boolean terminal;
+        private Map<Character, TrieNode> children;
+
+        TrieNode getChild(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        TrieNode getOrAddChild(char c) {
+            if (children==null) {
+                children = new HashMap<Character, TrieNode>();
+            }
+            TrieNode child = children.get(c);
+            if (child==null) {
+                child = new TrieNode();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.model.Property;
+
+/** Suggests enabling pack200 compressed downloads. */
+public class Pack200Rule extends AbstractRule {
+
+    public Pack200Rule() {
+        super(Input.DOCUMENT, Cost.LOW);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+      boolean pack200Enabled = false;
+
+      for (Property property : context.getDescriptor().getProperties())
+      {
+        debug(property);
+        if ("jnlp.packEnabled".equals(property.getName()) && property.getValue() != null)
+          pack200Enabled = "true".equals(property.getValue());
+      }
+
+      if (!pack200Enabled) {
+        errors.add(
+            new LaunchError(
+                "Reduce download time by enabling pack200. See http://docs.oracle.com/javase/tutorial/deployment/deploymentInDepth/reducingDownloadTime.html",
+                (Exception)null,
+                ErrorLevel.OPTIMIZE
+                ));
+      }
+    }
+}
@@ -0,0 +1,839 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.pscode.tool.janela.HttpCache;
+import org.pscode.tool.janela.ImageHeaderReader;
+import org.pscode.tool.janela.JarInspector;
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.ResourceMeter;
+import org.pscode.tool.janela.ResourceProbe;
+import org.pscode.tool.janela.model.JavaRuntime;
+import org.pscode.tool.janela.model.Resource;
+import org.pscode.tool.janela.model.Security;
+
+/** Checks the jar, nativelib, extension, icon, help and homepage
+resources: that they can be fetched, and that what is declared about
+them (type, size, dimensions, native libraries) matches what is there.
+Sizes the server does not report, or reports for an encoded body, are
+measured by streaming the body, which also shows what it holds.
+The extensions that can be fetched are recorded in the context.  Offline
+only the declarations are checked: types, hrefs and attributes, and so
+are the elements of a streamed descriptor, one at a time. */
+public class ResourceRule extends AbstractRule implements ElementRule {
+
+    private final JarInspector jarInspector = new JarInspector();
+    private final ImageHeaderReader imageHeaderReader = new ImageHeaderReader();
+    private final ResourceMeter resourceMeter = new ResourceMeter();
+
+    private static final String[] JAR_CONTENT_TYPES = {
+        "application/java-archive",
+        "application/x-java-archive"
+    };
+    private static final String[] JNLP_CONTENT_TYPES = {
+        "application/x-java-jnlp-file"
+    };
+    /** The icon formats of the JNLP specification, as for the href
+    types.  PNG is recognised, but not allowed. */
+    private static final String[] ICON_CONTENT_TYPES = {
+        "image/gif",
+        "image/jpeg"
+    };
+
+    public ResourceRule() {
+        super(Input.NETWORK, Cost.HIGH);
+    }
+
+    public void check(RuleContext context, List<LaunchError> errors) {
+        new Checks(context).check(errors);
+    }
+
+    public void checkResource(ElementContext context, Resource resource, List<LaunchError> errors) {
+        URL extension = new Checks(context).checkResource(resource, errors);
+        if (extension!=null) {
+            context.addExtension(extension);
+        }
+    }
+
+    public void checkJavaRuntime(ElementContext context, JavaRuntime runtime, List<LaunchError> errors) {
+        // not a resource
+    }
+
+    /** The checks of the resources of one descriptor. */
+    private class Checks {
+
+        /** The context of the rules, or null for a streamed descriptor. */
+        private final RuleContext context;
+        private final CodeBase codebase;
+        private final Security security;
+        private final boolean offline;
+        /** What was found before with elements that did not change, or null. */
+        private final ElementResults results;
+        /** The resources streamed to measure them, by URL. */
+        private final ConcurrentMap<String, ResourceMeter.Measurement> measurements =
+            new ConcurrentHashMap<String, ResourceMeter.Measurement>();
+
+        Checks(RuleContext context) {
+            this.context = context;
+            this.results = context.getElementResults();
+            this.codebase = context.getCodeBase();
+            this.security = context.getDescriptor().getSecurity();
+            this.offline = context.isOffline();
+        }
+
+        /** The checks of the elements of a streamed descriptor, which never
+        use the network. */
+        Checks(ElementContext context) {
+            this.context = null;
+            this.results = null;
+            this.codebase = context.getCodeBase();
+            this.security = context.getSecurity();
+            this.offline = true;
+        }
+
+        /** Check the jar, nativelib, extension, icon, help and homepage
+        resources.  Every resource is probed on the threads of the resource
+        verifier and its checks follow the probe there, which is safe because
+        they only read the immutable model; this thread waits once, for all of
+        them.  Their problems are reported in document order, kind by kind. */
+        void check(List<LaunchError> errors) {
+            List<ResourceTask> tasks = new ArrayList<ResourceTask>();
+            String[] kinds = {
+                "jar",
+                "nativelib",
+                "extension",
+                "icon",
+                "help",
+                "homepage"
+            };
+            for (String kind : kinds) {
+                for (Resource resource : context.getDescriptor().getResources(kind)) {
+                    tasks.add( new ResourceTask(resource) );
+                }
+            }
+
+            if (offline) {
+                // nothing to wait for, nothing to throttle
+                for (ResourceTask task : tasks) {
+                    errors.addAll( task.check() );
+                }
+            } else {
+                List<CompletableFuture<List<LaunchError>>> futures =
+                    new ArrayList<CompletableFuture<List<LaunchError>>>(tasks.size());
+                for (ResourceTask task : tasks) {
+                    futures.add( task.start() );
+                }
+                try {
+                    CompletableFuture.allOf(
+                        futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+                } catch(CompletionException ce) {
+                    // reported below, with the task that failed
+                }
+                for (CompletableFuture<List<LaunchError>> future : futures) {
+                    try {
+                        errors.addAll( future.join() );
+                    } catch(CompletionException ce) {
+                        Exception cause = ce.getCause() instanceof Exception
+                            ? (Exception)ce.getCause()
+                            : ce;
+                        errors.add( new LaunchError(cause.getMessage(), cause, ErrorLevel.ERROR) );
+                    }
+                }
+            }
+
+            for (ResourceTask task : tasks) {
+                if (task.extension!=null) {
+                    context.addExtension(task.extension);
+                }
+            }
+        }
+
+        /** The checks of one resource element, chained to its probe. */
+        private class ResourceTask {
+
+            private final Resource resource;
+            private final ElementResults.Result cached;
+            private URL extension;
+
+            ResourceTask(Resource resource) {
+                this.resource = resource;
+                this.cached = results == null
+                    ? null
+                    : results.get(ResourceRule.this, resource);
+            }
+
+            /** @return the problems of the resource, found once it is probed,
+            by checks run within the per-host limit of the resource verifier. */
+            CompletableFuture<List<LaunchError>> start() {
+                URL url = null;
+                // a cached result has nothing to fetch, nothing to throttle
+                if (cached==null) {
+                    try {
+                        url = codebase.resolve(resource.getHref());
+                    } catch(Exception e) {
+                        // the check itself will report this
+                    }
+                }
+                if (url==null) {
+                    return CompletableFuture.completedFuture( check() );
+                }
+                String host = "file".equals(url.getProtocol()) ? null : url.getHost();
+                Executor executor = context.getResourceVerifier().getExecutor(host);
+                CompletableFuture<ResourceProbe> probe =
+                    context.getResourceProber().probeAsync(url, executor);
+                if (probe.isDone()) {
+                    // probed before, only the checks are left
+                    return CompletableFuture.supplyAsync(new Supplier<List<LaunchError>>() {
+                        public List<LaunchError> get() {
+                            return check();
+                        }
+                    }, executor);
+                }
+                // the checks follow on the thread, and within the permit, of the probe
+                return probe.handle(new BiFunction<ResourceProbe, Throwable, List<LaunchError>>() {
+                    public List<LaunchError> apply(ResourceProbe done, Throwable failure) {
+                        // the checks read the probe again, failed or not
+                        return check();
+                    }
+                });
+            }
+
+            List<LaunchError> check() {
+                if (cached!=null) {
+                    extension = cached.getExtension();
+                    return cached.getErrors();
+                }
+                List<LaunchError> found = new ArrayList<LaunchError>();
+                extension = checkResource(resource, found);
+                if (results!=null) {
+                    results.put(ResourceRule.this, resource, found, extension);
+                }
+                return found;
+            }
+        }
+
+        /** @return the URL of the resource if it is an available extension,
+        otherwise null. */
+        URL checkResource(Resource resource, List<LaunchError> errors) {
+            String kind = resource.getElementName();
+            if ("jar".equals(kind)) {
+                checkJarResource(resource, errors);
+            } else if ("nativelib".equals(kind)) {
+                checkNativeLibResource(resource, errors);
+            } else if ("extension".equals(kind)) {
+                return checkExtensionResource(resource, errors);
+            } else if ("icon".equals(kind)) {
+                checkIconResource(resource, errors);
+            } else {
+                checkLinkResource(resource, errors);
+            }
+            return null;
+        }
+
+        void checkJarResource(Resource resource, List<LaunchError> errors) {
+            try {
+                // should be 1st check..
+                checkResourceAvailability(resource, errors);
+
+                // check other aspects of this resource
+                String[] types = {
+                    "jar"
+                };
+                checkResourceType(resource, types, errors);
+                checkResourceHrefOptimisation(resource, errors);
+
+                checkResourceSize(resource, errors);
+                checkResourceContent(resource, JAR_CONTENT_TYPES,
+                    new ResourceMeter.Kind[] {ResourceMeter.Kind.ZIP}, null, errors);
+
+    //            checkDefaultValueSpecified(resource, errors);
+
+                checkLazyForNonMain(resource, errors);
+
+                checkLazyHasPart(resource, errors);
+            } catch(IOException ioe) {
+                addResourceFetchError(resource, ioe, true, errors);
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        void checkNativeLibResource(Resource resource, List<LaunchError> errors) {
+            try {
+                // should be 1st check..
+                checkResourceAvailability(resource, errors);
+
+                // check other aspects of this resource
+                String[] types = {
+                    "jar"
+                };
+                checkResourceType(resource, types, errors);
+                checkResourceHrefOptimisation(resource, errors);
+
+                checkResourceSize(resource, errors);
+                checkResourceContent(resource, JAR_CONTENT_TYPES,
+                    new ResourceMeter.Kind[] {ResourceMeter.Kind.ZIP}, null, errors);
+
+                checkLibIsInTrusted(resource, errors);
+
+                checkLibIsInRoot(resource, errors);
+
+                checkLibIsOptimized(resource, errors);
+
+                checkDefaultValueSpecified(resource, errors);
+
+                checkLazyForNonMain(resource, errors);
+
+                checkLazyHasPart(resource, errors);
+
+            } catch(IOException ioe) {
+                addResourceFetchError(resource, ioe, true, errors);
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        void checkDefaultValueSpecified(Resource resource, List<LaunchError> errors) {
+            if ("eager".equals(resource.getDownload()) ) {
+                LaunchError launchError = new LaunchError(
+                    "The resource download at " +
+                    resource.getHref() +
+                    " can be optimized by removing the (default) value of download='eager'.",
+                    (Exception)null,
+                    ErrorLevel.OPTIMIZE
+                    );
+                errors.add( launchError );
+            }
+            if ("false".equals(resource.getMain()) ) {
+                LaunchError launchError = new LaunchError(
+                    "The resource download at " +
+                    resource.getHref() +
+                    " can be optimized by removing the (default) value of main='false'.",
+                    (Exception)null,
+                    ErrorLevel.OPTIMIZE
+                    );
+                errors.add( launchError );
+            }
+        }
+
+        void checkLibIsOptimized(Resource resource, List<LaunchError> errors) {
+            // as given by the enclosing resources element
+            if (resource.getOs()==null && resource.getPlatform()==null) {
+                LaunchError launchError = new LaunchError(
+                    "The download can be optimized by including the nativelib " +
+                    resource.getHref() +
+                    " in an os/platform specific resources element",
+                    (Exception)null,
+                    ErrorLevel.OPTIMIZE
+                    );
+            
+                errors.add( launchError );
+            }
+        }
+
+        void checkLibIsInTrusted(Resource resource, List<LaunchError> errors) {
+            if (security==null || !security.isAllPermissions()) {
+                LaunchError launchError = new LaunchError(
+                    "Native lib " +
+                    resource.getHref() +
+                    " requires 'all-permissions'.",
+                    (Exception)null,
+                    ErrorLevel.ERROR
+                    );
+                errors.add( launchError );
+            }
+        }
+
+        void checkLibIsInRoot(Resource resource, List<LaunchError> errors) throws IOException {
+            if (offline) {
+                return;
+            }
+            URL nativelib = codebase.resolve(resource.getHref());
+            for (String name : getNativeLibEntries(nativelib)) {
+                if ( name.indexOf("/")!=-1 ) {
+                    LaunchError launchError = new LaunchError(
+                        "Native lib " +
+                        name +
+                        " must be in the root of " +
+                        resource.getHref() +
+                        ".",
+                        (Exception)null,
+                        ErrorLevel.ERROR);
+                    errors.add( launchError );
+                }
+            }
+        }
+
+        /** @return the .dll and .so entries of the jar, taken from the cache if
+        the jar is known not to have changed. */
+        private List<String> getNativeLibEntries(URL nativelib) throws IOException {
+            HttpCache cache = context.getHttpCache();
+            boolean cacheable = cache!=null && HttpCache.isCacheable(nativelib);
+            String fact = cacheable ? cache.getFact(nativelib, "nativelib.entries") : null;
+            if (fact!=null) {
+                return fact.length()==0
+                    ? new ArrayList<String>()
+                    : Arrays.asList(fact.split("\n"));
+            }
+            List<String> libs = new ArrayList<String>();
+            StringBuilder sb = new StringBuilder();
+            for (String name : jarInspector.listEntries(nativelib)) {
+                if ( name.endsWith(".dll") || name.endsWith(".so") ) {
+                    libs.add(name);
+                    sb.append(sb.length() == 0 ? "" : "\n").append(name);
+                }
+            }
+            if (cacheable) {
+                cache.putFact(nativelib, "nativelib.entries", sb.toString());
+            }
+            return libs;
+        }
+
+        /** @return the size of the image, taken from the cache if the image
+        is known not to have changed, or null if it is of an unknown type. */
+        private ImageHeaderReader.Size getImageSize(URL url) throws IOException {
+            HttpCache cache = context.getHttpCache();
+            boolean cacheable = cache!=null && HttpCache.isCacheable(url);
+            String fact = cacheable ? cache.getFact(url, "image.size") : null;
+            if (fact!=null) {
+                int x = fact.indexOf('x');
+                return x < 0 ? null : new ImageHeaderReader.Size(
+                    Integer.parseInt(fact.substring(0, x)),
+                    Integer.parseInt(fact.substring(x + 1)));
+            }
+            ImageHeaderReader.Size size = imageHeaderReader.readSize(url);
+            if (cacheable) {
+                cache.putFact(url, "image.size", size == null ? "unknown" : size.toString());
+            }
+            return size;
+        }
+
+        /** @return the URL of the extension, or null if it is not available. */
+        URL checkExtensionResource(Resource resource, List<LaunchError> errors) {
+            try {
+                // should be 1st check..
+                checkResourceAvailability(resource, errors);
+
+                // check other aspects of this resource
+                String[] types = {
+                    "jnlp"
+                };
+                checkResourceType(resource, types, errors);
+                checkResourceHrefOptimisation(resource, errors);
+                checkResourceContent(resource, JNLP_CONTENT_TYPES,
+                    new ResourceMeter.Kind[] {ResourceMeter.Kind.XML}, null, errors);
+                try {
+                    return codebase.resolve(resource.getHref());
+                } catch(MalformedURLException murle) {
+                    addException(murle, errors);
+                }
+
+            } catch(IOException ioe) {
+                addResourceFetchError(resource, ioe, true, errors);
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+            return null;
+        }
+
+        void checkIconResource(Resource resource, List<LaunchError> errors) {
+            try {
+                // should be 1st check..
+                checkResourceAvailability(resource, errors);
+
+                // check other aspects of this resource
+                String[] types = {
+                    "gif",
+                    "jpg",
+                    "jpeg"
+                };
+                checkResourceType(resource, types, errors);
+                checkResourceHrefOptimisation(resource, errors);
+
+                checkResourceSize(resource, errors);
+                checkResourceContent(resource, ICON_CONTENT_TYPES,
+                    new ResourceMeter.Kind[] {ResourceMeter.Kind.GIF, ResourceMeter.Kind.JPEG},
+                    "The JNLP specification only allows GIF and JPEG icons.",
+                    errors);
+
+                checkIconSize(resource, errors);
+
+                checkSplashIconHasHref(resource, errors);
+
+            } catch(IOException ioe) {
+                addResourceFetchError(resource, ioe, true, errors);
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        void checkIconSize(Resource resource, List<LaunchError> errors) {
+            if (offline) {
+                return;
+            }
+            String width = resource.getWidth();
+            String height = resource.getHeight();
+            if (width!=null && height!=null) {
+                try {
+                    URL url = codebase.resolve(resource.getHref());
+                    try {
+                        ImageHeaderReader.Size size = getImageSize(url);
+                        int actualWidth = size == null ? -1 : size.getWidth();
+                        int actualHeight = size == null ? -1 : size.getHeight();
+                        int declaredWidth = Integer.parseInt( width );
+                        if (declaredWidth!=actualWidth) {
+                            LaunchError launchError = new LaunchError(
+                                "Icon at " +
+                                resource.getHref() +
+                                " is declared with width " +
+                                declaredWidth +
+                                " but is actually " +
+                                actualWidth +
+                                ".",
+                                (Exception)null,
+                                ErrorLevel.OPTIMIZE
+                                );
+                            errors.add( launchError );
+                        }
+                        int declaredHeight = Integer.parseInt( height );
+                        if (declaredHeight!=actualHeight) {
+                            LaunchError launchError = new LaunchError(
+                                "Icon at " +
+                                resource.getHref() +
+                                " is declared with height " +
+                                declaredHeight +
+                                " but is actually " +
+                                actualHeight +
+                                ".",
+                                (Exception)null,
+                                ErrorLevel.OPTIMIZE
+                                );
+                            errors.add( launchError );
+                        }
+                    } catch (Exception e) {
+                        addException(e, errors);
+                    }
+                } catch(MalformedURLException murle) {
+                    // noted elsewhere, ignore
+                }
+            } else {
+                LaunchError launchError = new LaunchError(
+                    "Icon loading & use can be optimized by specifying the width and height for " +
+                    resource.getHref(),
+                    (Exception)null,
+                    ErrorLevel.OPTIMIZE
+                    );
+                errors.add( launchError );
+            }
+        }
+
+        void checkLazyHasPart(Resource resource, List<LaunchError> errors) {
+            if (resource.getPart()==null && "lazy".equals(resource.getDownload())) {
+                LaunchError launchError = new LaunchError(
+                    "Lazy downloads might not work as expected for " +
+                    resource.getHref() +
+                    " unless the download 'part' is specified. ",
+                    (Exception)null,
+                    ErrorLevel.WARNING
+                    );
+                errors.add( launchError );
+            }
+        }
+
+        void checkLazyForNonMain(Resource resource, List<LaunchError> errors) {
+            String main = resource.getMain();
+            String download = resource.getDownload();
+            if (main == null || main.equals("false") ) {
+                if (download == null || download.equals("eager")) {
+                    LaunchError launchError = new LaunchError(
+                        "It might be possible to optimize the start-up of the app. by " +
+                        " specifying download='lazy' for the " +
+                        resource.getHref() +
+                        " resource.",
+                        (Exception)null,
+                        ErrorLevel.OPTIMIZE
+                        );
+                    errors.add( launchError );
+                }
+            }
+        }
+
+        void checkSplashIconHasHref(Resource resource, List<LaunchError> errors) {
+            String href = codebase.getHref();
+            if (href==null) {
+                LaunchError launchError = new LaunchError(
+                        "Icon  " +
+                        resource.getHref() +
+                        " will not appear as a splash unless the JNLP href attribute is specified.",
+                        (Exception)null,
+                        ErrorLevel.WARNING
+                );
+                errors.add( launchError );
+            }
+        }
+
+        void checkLinkResource(Resource resource, List<LaunchError> errors) {
+            try {
+                // should be 1st check..
+                checkResourceAvailability(resource, errors);
+
+                checkResourceHrefOptimisation(resource, errors);
+
+            } catch(IOException ioe) {
+                addResourceFetchError(resource, ioe, true, errors);
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        void checkResourceHrefOptimisation(Resource resource, List<LaunchError> errors) {
+            String href = resource.getHref();
+            try {
+                URL fullPath = codebase.resolve(href);
+                URI codebaseUri = codebase.getURI();
+                URI pathUri = fullPath.toURI();
+                String relative = codebaseUri.relativize(pathUri).toString();
+                if (relative.length()<href.length()) {
+                    LaunchError launchError = new LaunchError(
+                        "The HREF of '" +
+                        href +
+                        "' could be optimized to '" +
+                        relative +
+                        "'.",
+                        (Exception)null,
+                        ErrorLevel.OPTIMIZE);
+                    errors.add( launchError );
+                }
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        void checkResourceType(Resource resource, String[] allowable, List<LaunchError> errors) {
+            String[] parts = resource.getHref().split("\\.");
+            int last = parts.length-1;
+            for ( int ii=0; ii<allowable.length; ii++ ) {
+                debug(parts[last] + "==" + allowable[ii]);
+                if (parts[last].equalsIgnoreCase(allowable[ii])) {
+                    // type found
+                    return;
+                }
+            }
+            StringBuffer types = new StringBuffer();
+            for ( int ii=0; ii<allowable.length; ii++ ) {
+                types.append( allowable[ii] );
+                types.append( ", " );
+            }
+            String allowableTypes = types.toString();
+            allowableTypes = allowableTypes.substring(0,allowableTypes.length()-2);
+            LaunchError launchError = new LaunchError(
+                "Resource type " +
+                parts[last] +
+                " of resource " +
+                resource.getHref() +
+                " is not one of the allowable types of " +
+                allowableTypes +
+                ".",
+                (Exception)null,
+                ErrorLevel.ERROR);
+            errors.add(launchError);
+        }
+
+        void checkResourceAvailability(Resource resource, List<LaunchError> errors) throws IOException {
+            if (offline) {
+                return;
+            }
+            getProbe(resource).checkAvailable();
+        }
+
+        /** @return the one probe of the resource, shared by all its checks. */
+        private ResourceProbe getProbe(Resource resource)
+            throws MalformedURLException {
+            URL url = codebase.resolve(resource.getHref());
+            return context.getResourceProber().probe(url);
+        }
+
+        void checkResourceSize(Resource resource, List<LaunchError> errors) {
+            if (offline) {
+                return;
+            }
+            try {
+                String size = resource.getSize();
+                if (size==null) {
+                    LaunchError launchError = new LaunchError(
+                        "Downloads can be optimized by specifying a resource size for '" +
+                        resource.getHref() +
+                        "'.",
+                        (Exception)null,
+                        ErrorLevel.OPTIMIZE);
+                    errors.add( launchError );
+                } else {
+                    // check size against declared size
+                    long declaredSize = Long.parseLong( size );
+                    ResourceProbe probe = getProbe(resource);
+                    long actualSize = probe.getContentLength();
+                    ResourceMeter.Measurement measurement = null;
+                    if (actualSize<0 || probe.getContentEncoding()!=null) {
+                        // chunked, or the length of the encoded body
+                        measurement = getMeasurement(resource, true);
+                        actualSize = measurement.getDecodedBytes();
+                    }
+                    if (actualSize!=declaredSize) {
+                        String wire = measurement == null
+                                || measurement.getWireBytes()==actualSize
+                            ? ""
+                            : " (" + measurement.getWireBytes() + " bytes as sent)";
+                        LaunchError launchError = new LaunchError(
+                            "Resource '" +
+                            resource.getHref() +
+                            "' declared as size '" +
+                            declaredSize +
+                            "' but is actually '" +
+                            actualSize +
+                            "'" +
+                            wire +
+                            ".",
+                            (Exception)null,
+                            ErrorLevel.WARNING);
+                        errors.add( launchError );
+                    }
+                }
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        /** Check the content type the server gives the resource, and what
+        the body holds if it was streamed to measure it.
+        @param reason why only these types are allowed, or null. */
+        void checkResourceContent(Resource resource, String[] contentTypes,
+            ResourceMeter.Kind[] kinds, String reason, List<LaunchError> errors) {
+
+            if (offline) {
+                return;
+            }
+            try {
+                ResourceProbe probe = getProbe(resource);
+                if (probe.getStatus()!=ResourceProbe.NOT_HTTP) {
+                    String type = probe.getContentType();
+                    String mimeType = type == null
+                        ? null
+                        : type.split(";")[0].trim().toLowerCase();
+                    if (!Arrays.asList(contentTypes).contains(mimeType)) {
+                        LaunchError launchError = new LaunchError(
+                            "Content type " +
+                            type +
+                            " of resource " +
+                            resource.getHref() +
+                            " is not one of the expected types of " +
+                            join(contentTypes) +
+                            "." +
+                            (reason == null ? "" : "  " + reason),
+                            (Exception)null,
+                            ErrorLevel.WARNING);
+                        errors.add( launchError );
+                    }
+                }
+                ResourceMeter.Measurement measurement = getMeasurement(resource, false);
+                if (measurement!=null
+                        && !Arrays.asList(kinds).contains(measurement.getKind())) {
+                    LaunchError launchError = new LaunchError(
+                        "Content of resource " +
+                        resource.getHref() +
+                        " is " +
+                        measurement.getKind() +
+                        ", not one of the expected kinds of " +
+                        join(kinds) +
+                        "." +
+                        (reason == null ? "" : "  " + reason),
+                        (Exception)null,
+                        ErrorLevel.ERROR);
+                    errors.add( launchError );
+                }
+            } catch(Exception e) {
+                addException(e, errors);
+            }
+        }
+
+        /** @return the measurement of the resource, taken from the cache if
+        it is known not to have changed.  If <code>stream</code> is false,
+        only a measurement made before is returned, or null. */
+        private ResourceMeter.Measurement getMeasurement(Resource resource,
+            boolean stream) throws IOException {
+
+            URL url = codebase.resolve(resource.getHref());
+            String key = url.toExternalForm();
+            ResourceMeter.Measurement measurement = measurements.get(key);
+            if (measurement!=null || !stream) {
+                return measurement;
+            }
+            HttpCache cache = context.getHttpCache();
+            boolean cacheable = cache!=null && HttpCache.isCacheable(url);
+            String fact = cacheable ? cache.getFact(url, "body.measurement") : null;
+            if (fact!=null) {
+                measurement = ResourceMeter.Measurement.parse(fact);
+            }
+            if (measurement==null) {
+                measurement = resourceMeter.measure(url);
+                if (cacheable) {
+                    cache.putFact(url, "body.measurement", measurement.toString());
+                }
+            }
+            measurements.put(key, measurement);
+            return measurement;
+        }
+
+        private String join(Object[] values) {
+            StringBuffer sb = new StringBuffer();
+            for ( int ii=0; ii<values.length; ii++ ) {
+                sb.append( ii==0 ? "" : ", " );
+                sb.append( values[ii] );
+            }
+            return sb.toString();
+        }
+
+        void addResourceFetchError(Resource resource, Exception e, boolean error, List<LaunchError> errors) {
+            addResourceFetchError(resource.getHref(), e, error, errors);
+        }
+
+        void addResourceFetchError(String href, Exception e, boolean error, List<LaunchError> errors) {
+            ErrorLevel level = (error ? ErrorLevel.ERROR : ErrorLevel.WARNING );
+            errors.add( new LaunchError(
+                "Problem fetching resource " + href
+                + ".  " + e.getMessage(),
+                e, level) );
+        }
+    }
+}
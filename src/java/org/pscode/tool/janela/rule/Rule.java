@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.List;
+
+import org.pscode.tool.janela.LaunchError;
+
+/** A check of a descriptor.  Rules are found with a
+{@link java.util.ServiceLoader}: list the class name in
+<code>META-INF/services/org.pscode.tool.janela.rule.Rule</code> of a jar
+on the class path and it is run with the built in rules, after them.
+<p>
+A rule is created once and run for many descriptors, possibly at the
+same time, so it must not keep state between runs.  It only reads the
+context and reports into the list it is given. */
+public interface Rule {
+
+    /** What a rule needs to do its job. */
+    enum Input {
+        /** Only the descriptor itself, no connections are made. */
+        DOCUMENT,
+        /** Resources referred to by the descriptor are fetched.  When the
+        context is {@link RuleContext#isOffline() offline} the rule must
+        not make any request, and only does the checks that need none. */
+        NETWORK
+    }
+
+    /** A rough measure of how long a rule takes, used to schedule it. */
+    enum Cost {
+        LOW,
+        MEDIUM,
+        HIGH
+    }
+
+    Input getInput();
+
+    Cost getCost();
+
+    /** Check the descriptor of <code>context</code>, adding any problems
+    found to <code>errors</code>. */
+    void check(RuleContext context, List<LaunchError> errors);
+}
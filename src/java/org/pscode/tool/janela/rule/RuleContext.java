@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pscode.tool.janela.DescriptorSnapshot;
+import org.pscode.tool.janela.HttpCache;
+import org.pscode.tool.janela.ResourceProber;
+import org.pscode.tool.janela.ResourceVerifier;
+import org.pscode.tool.janela.model.JNLPDescriptor;
+
+/** Everything the rules of one analysis share: the descriptor as fetched
+and as parsed, and the services to reach its resources with.  Rules may
+read it from several threads at once. */
+public class RuleContext {
+
+    private final URL page;
+    private final DescriptorSnapshot snapshot;
+    private final JNLPDescriptor descriptor;
+    private final ResourceProber resourceProber;
+    private final ResourceVerifier resourceVerifier;
+    private final HttpCache httpCache;
+    private final CodeBase codeBase;
+    private final boolean offline;
+    private final ElementResults elementResults;
+    private final List<URL> extensions = new ArrayList<URL>();
+
+    public RuleContext(URL page, DescriptorSnapshot snapshot,
+            JNLPDescriptor descriptor, ResourceProber resourceProber,
+            ResourceVerifier resourceVerifier, HttpCache httpCache) {
+        this(page, snapshot, descriptor, resourceProber, resourceVerifier,
+            httpCache, false);
+    }
+
+    /** @param offline true if the rules must not use the network. */
+    public RuleContext(URL page, DescriptorSnapshot snapshot,
+            JNLPDescriptor descriptor, ResourceProber resourceProber,
+            ResourceVerifier resourceVerifier, HttpCache httpCache,
+            boolean offline) {
+        this(page, snapshot, descriptor, resourceProber, resourceVerifier,
+            httpCache, offline, null);
+    }
+
+    /** @param elementResults what the rules found with the elements of the
+    last analysis of this descriptor, already updated for this one, or null
+    to check every element. */
+    public RuleContext(URL page, DescriptorSnapshot snapshot,
+            JNLPDescriptor descriptor, ResourceProber resourceProber,
+            ResourceVerifier resourceVerifier, HttpCache httpCache,
+            boolean offline, ElementResults elementResults) {
+        this.page = page;
+        this.snapshot = snapshot;
+        this.descriptor = descriptor;
+        this.resourceProber = resourceProber;
+        this.resourceVerifier = resourceVerifier;
+        this.httpCache = httpCache;
+        this.codeBase = new CodeBase(page, descriptor.getCodebase(), descriptor.getHref());
+        this.offline = offline;
+        this.elementResults = elementResults;
+    }
+
+    /** @return where the descriptor was fetched from. */
+    public URL getURL() {
+        return page;
+    }
+
+    public DescriptorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public JNLPDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public ResourceProber getResourceProber() {
+        return resourceProber;
+    }
+
+    public ResourceVerifier getResourceVerifier() {
+        return resourceVerifier;
+    }
+
+    /** @return the cache to keep facts about resources in, or null. */
+    public HttpCache getHttpCache() {
+        return httpCache;
+    }
+
+    /** @return true if no resource may be fetched, see {@link Rule.Input#NETWORK}. */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /** @return the results of elements that need not be checked again,
+    or null. */
+    public ElementResults getElementResults() {
+        return elementResults;
+    }
+
+    /** @return the codebase and href, resolved once for all rules. */
+    public CodeBase getCodeBase() {
+        return codeBase;
+    }
+
+    /** Record an extension the descriptor refers to. */
+    public void addExtension(URL extension) {
+        synchronized (extensions) {
+            extensions.add(extension);
+        }
+    }
+
+    /** @return the extensions recorded so far, in the order they were. */
+    public List<URL> getExtensions() {
+        synchronized (extensions) {
+            return new ArrayList<URL>(extensions);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2009, 2010 Andrew Thompson.
+ * 
+ * This file is part of JaNeLa.
+ * 
+ * JaNeLa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JaNeLa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with JaNeLa.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.pscode.tool.janela.rule;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.pscode.tool.janela.LaunchError;
+import org.pscode.tool.janela.LaunchError.ErrorLevel;
+import org.pscode.tool.janela.NetworkExecutors;
+
+/** Runs rules side by side.  Network rules are started first, most
+costly first, on a pool meant for blocking I/O; document rules run on a
+fork-join pool meanwhile, each costly one as a task of its own and the
+cheap ones together in one task.  However the work is spread, the
+problems are reported in the order of the rules. */
+public class RuleExecutor {
+
+    private static final boolean DEBUG = false;
+
+    private static RuleExecutor defaultExecutor;
+    private static List<Rule> defaultRules;
+
+    private final ForkJoinPool documentPool;
+    private final ExecutorService networkPool;
+
+    public RuleExecutor(ForkJoinPool documentPool, ExecutorService networkPool) {
+        this.documentPool = documentPool;
+        this.networkPool = networkPool;
+    }
+
+    /** @return an executor shared by the whole process, with a fork-join
+    pool as wide as the machine, and virtual or daemon threads for network
+    rules (see {@link NetworkExecutors}). */
+    public static synchronized RuleExecutor getDefault() {
+        if (defaultExecutor==null) {
+            defaultExecutor = new RuleExecutor(new ForkJoinPool(),
+                NetworkExecutors.newExecutor("janela-rule-", 0));
+        }
+        return defaultExecutor;
+    }
+
+    /** @return the rules registered with the ServiceLoader, loaded once. */
+    public static synchronized List<Rule> getDefaultRules() {
+        if (defaultRules==null) {
+            defaultRules = loadRules(RuleExecutor.class.getClassLoader());
+        }
+        return defaultRules;
+    }
+
+    /** @return the rules registered through <code>loader</code>, in the
+    order they are listed.  Rules that can not be loaded are skipped. */
+    public static List<Rule> loadRules(ClassLoader loader) {
+        List<Rule> rules = new ArrayList<Rule>();
+        Iterator<Rule> iterator = ServiceLoader.load(Rule.class, loader).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                rules.add(iterator.next());
+            } catch(ServiceConfigurationError sce) {
+                debug("Skipping rule: " + sce.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    /** Run all rules against <code>context</code> and wait for them.
+    @return the problems found, in the order of <code>rules</code>. */
+    public List<LaunchError> run(List<Rule> rules, RuleContext context) {
+        try {
+            return runAsync(rules, context).get();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            List<LaunchError> errors = new ArrayList<LaunchError>();
+            errors.add( new LaunchError(
+                "Interrupted before the rules finished", ie, ErrorLevel.WARNING) );
+            return errors;
+        } catch(ExecutionException ee) {
+            // RuleTask reports what its rule throws, this is a bug
+            throw new IllegalStateException(ee.getCause());
+        }
+    }
+
+    /** Start all rules against <code>context</code>.
+    @return the problems found, in the order of <code>rules</code>, once
+    every rule is done. */
+    public CompletableFuture<List<LaunchError>> runAsync(List<Rule> rules,
+            final RuleContext context) {
+        int size = rules.size();
+        final List<CompletableFuture<List<LaunchError>>> futures =
+            new ArrayList<CompletableFuture<List<LaunchError>>>(size);
+        for (int ii=0; ii<size; ii++) {
+            futures.add(null);
+        }
+
+        // network rules wait on connections, get them going first
+        for (Rule.Cost cost : new Rule.Cost[] {Rule.Cost.HIGH, Rule.Cost.MEDIUM, Rule.Cost.LOW}) {
+            for (int ii=0; ii<size; ii++) {
+                Rule rule = rules.get(ii);
+                if (rule.getInput()==Rule.Input.NETWORK && rule.getCost()==cost) {
+                    futures.set(ii, CompletableFuture.supplyAsync(
+                        new RuleTask(rule, context), networkPool));
+                }
+            }
+        }
+
+        final List<Rule> cheapRules = new ArrayList<Rule>();
+        List<Integer> cheapIndexes = new ArrayList<Integer>();
+        for (int ii=0; ii<size; ii++) {
+            Rule rule = rules.get(ii);
+            if (rule.getInput()!=Rule.Input.NETWORK) {
+                if (rule.getCost()==Rule.Cost.LOW) {
+                    cheapRules.add(rule);
+                    cheapIndexes.add(ii);
+                } else {
+                    futures.set(ii, CompletableFuture.supplyAsync(
+                        new RuleTask(rule, context), documentPool));
+                }
+            }
+        }
+        // one task for all cheap rules, forking each costs more than running it
+        CompletableFuture<List<List<LaunchError>>> cheapFuture = CompletableFuture.supplyAsync(
+            new Supplier<List<List<LaunchError>>>() {
+                public List<List<LaunchError>> get() {
+                    List<List<LaunchError>> results = new ArrayList<List<LaunchError>>();
+                    for (Rule rule : cheapRules) {
+                        results.add( new RuleTask(rule, context).get() );
+                    }
+                    return results;
+                }
+            }, documentPool);
+        for (int cc=0; cc<cheapIndexes.size(); cc++) {
+            final int cheapIndex = cc;
+            futures.set(cheapIndexes.get(cc), cheapFuture.thenApply(
+                new Function<List<List<LaunchError>>, List<LaunchError>>() {
+                    public List<LaunchError> apply(List<List<LaunchError>> results) {
+                        return results.get(cheapIndex);
+                    }
+                }));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[size]))
+            .thenApply(new Function<Void, List<LaunchError>>() {
+                public List<LaunchError> apply(Void done) {
+                    List<LaunchError> errors = new ArrayList<LaunchError>();
+                    for (CompletableFuture<List<LaunchError>> future : futures) {
+                        errors.addAll( future.join() );
+                    }
+                    return errors;
+                }
+            });
+    }
+
+    /** Runs one rule into a list of its own. */
+    private static class RuleTask implements Supplier<List<LaunchError>> {
+
+        private final Rule rule;
+        private final RuleContext context;
+
+        RuleTask(Rule rule, RuleContext context) {
+            this.rule = rule;
+            this.context = context;
+        }
+
+        public List<LaunchError> get() {
+            List<LaunchError> errors = new ArrayList<LaunchError>();
+            try {
+                rule.check(context, errors);
+            } catch(RuntimeException re) {
+                errors.add( new LaunchError(
+                    "Rule " + rule + " failed: " + re,
+                    re, ErrorLevel.ERROR) );
+            }
+            return errors;
+        }
+    }
+
+    private static void debug(Object obj) {
+        if (DEBUG) {
+            System.out.println(obj);
+        }
+    }
+}